@@ -0,0 +1,266 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmark of waypoint pair cache lookups on a 10k segment network.
+ *
+ * <p>The network is a grid of waypoints 16 blocks apart where each waypoint is
+ * connected to its neighbours in both directions. Lookups of every segment are
+ * timed in random order using:</p>
+ *
+ * <ul>
+ *     <li>{@link PackedPairMap}, which the pair cache uses.</li>
+ *     <li>A {@link HashMap} keyed by the previous pair hash, the XOR of the start and
+ *     end coordinates.</li>
+ *     <li>A {@link HashMap} keyed by the {@link PackedPairMap#hash} mixing hash.</li>
+ * </ul>
+ *
+ * <p>Not part of the plugin. Run with the plugin classes and its provided
+ * dependencies on the class path:</p>
+ *
+ * <pre>
+ * java -cp &lt;classpath&gt; com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedPairMapBenchmark
+ * </pre>
+ */
+public class PackedPairMapBenchmark {
+
+    private static final int GRID_SIZE = 51;
+    private static final int SPACING = 16;
+    private static final int Y = 64;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int LOOKUPS_PER_SEGMENT = 20;
+
+    public static void main(String[] args) {
+
+        List<Segment> segments = createNetwork();
+        Collections.shuffle(segments, new Random(1));
+
+        PackedPairMap<Segment> packed = new PackedPairMap<>(segments.size());
+        Map<XorKey, Segment> xor = new HashMap<>(segments.size() * 2);
+        Map<MixKey, Segment> mixed = new HashMap<>(segments.size() * 2);
+
+        Set<Integer> xorHashes = new HashSet<>(segments.size() * 2);
+        Set<Integer> mixedHashes = new HashSet<>(segments.size() * 2);
+
+        for (Segment segment : segments) {
+            packed.put(segment.start, segment.end, segment);
+            xor.put(new XorKey(segment), segment);
+            mixed.put(new MixKey(segment.start, segment.end), segment);
+
+            xorHashes.add(new XorKey(segment).hashCode());
+            mixedHashes.add(PackedPairMap.hash(segment.start, segment.end));
+        }
+
+        System.out.println("Segments: " + segments.size());
+        System.out.println("Distinct hashes, XOR: " + xorHashes.size() + ", mixed: " + mixedHashes.size());
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            timePacked(packed, segments);
+            timeXor(xor, segments);
+            timeMixed(mixed, segments);
+        }
+
+        long packedNanos = 0;
+        long xorNanos = 0;
+        long mixedNanos = 0;
+
+        for (int i = 0; i < ROUNDS; i++) {
+            packedNanos += timePacked(packed, segments);
+            xorNanos += timeXor(xor, segments);
+            mixedNanos += timeMixed(mixed, segments);
+        }
+
+        double lookups = (double)ROUNDS * LOOKUPS_PER_SEGMENT * segments.size();
+
+        System.out.println(String.format("PackedPairMap:        %.1f ns/lookup", packedNanos / lookups));
+        System.out.println(String.format("HashMap, XOR hash:    %.1f ns/lookup", xorNanos / lookups));
+        System.out.println(String.format("HashMap, mixed hash:  %.1f ns/lookup", mixedNanos / lookups));
+    }
+
+    /*
+     * Create the segments of a grid network, connecting each waypoint to its
+     * neighbours in both directions.
+     */
+    private static List<Segment> createNetwork() {
+
+        List<Segment> segments = new ArrayList<>(GRID_SIZE * GRID_SIZE * 4);
+
+        for (int x = 0; x < GRID_SIZE; x++) {
+            for (int z = 0; z < GRID_SIZE; z++) {
+
+                if (x + 1 < GRID_SIZE) {
+                    segments.add(new Segment(x, z, x + 1, z));
+                    segments.add(new Segment(x + 1, z, x, z));
+                }
+
+                if (z + 1 < GRID_SIZE) {
+                    segments.add(new Segment(x, z, x, z + 1));
+                    segments.add(new Segment(x, z + 1, x, z));
+                }
+            }
+        }
+
+        return segments;
+    }
+
+    private static long timePacked(PackedPairMap<Segment> map, List<Segment> segments) {
+
+        int found = 0;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < LOOKUPS_PER_SEGMENT; i++) {
+            for (Segment segment : segments) {
+                if (map.get(segment.start, segment.end) != null)
+                    found++;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        check(found, segments);
+        return elapsed;
+    }
+
+    private static long timeXor(Map<XorKey, Segment> map, List<Segment> segments) {
+
+        int found = 0;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < LOOKUPS_PER_SEGMENT; i++) {
+            for (Segment segment : segments) {
+                if (map.get(new XorKey(segment)) != null)
+                    found++;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        check(found, segments);
+        return elapsed;
+    }
+
+    private static long timeMixed(Map<MixKey, Segment> map, List<Segment> segments) {
+
+        int found = 0;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < LOOKUPS_PER_SEGMENT; i++) {
+            for (Segment segment : segments) {
+                if (map.get(new MixKey(segment.start, segment.end)) != null)
+                    found++;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        check(found, segments);
+        return elapsed;
+    }
+
+    /*
+     * Make sure every lookup found its segment so the lookups cannot be skipped.
+     */
+    private static void check(int found, List<Segment> segments) {
+        if (found != LOOKUPS_PER_SEGMENT * segments.size())
+            throw new AssertionError("Segment not found.");
+    }
+
+    /*
+     * A segment between two waypoints of the grid.
+     */
+    private static class Segment {
+
+        final int startX, startZ, endX, endZ;
+        final long start;
+        final long end;
+
+        Segment(int gridStartX, int gridStartZ, int gridEndX, int gridEndZ) {
+            startX = gridStartX * SPACING;
+            startZ = gridStartZ * SPACING;
+            endX = gridEndX * SPACING;
+            endZ = gridEndZ * SPACING;
+            start = PackedCoords.pack(startX, Y, startZ);
+            end = PackedCoords.pack(endX, Y, endZ);
+        }
+    }
+
+    /*
+     * Key hashed the way waypoint pairs were hashed before PackedPairMap.
+     */
+    private static class XorKey {
+
+        final Segment segment;
+
+        XorKey(Segment segment) {
+            this.segment = segment;
+        }
+
+        @Override
+        public int hashCode() {
+            return segment.startX ^ Y ^ segment.startZ ^ segment.endX ^ Y ^ segment.endZ;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof XorKey &&
+                    ((XorKey) obj).segment.start == segment.start &&
+                    ((XorKey) obj).segment.end == segment.end;
+        }
+    }
+
+    /*
+     * Key hashed with the PackedPairMap mixing hash.
+     */
+    private static class MixKey {
+
+        final long start;
+        final long end;
+
+        MixKey(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int hashCode() {
+            return PackedPairMap.hash(start, end);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof MixKey &&
+                    ((MixKey) obj).start == start &&
+                    ((MixKey) obj).end == end;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits;
+
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.nucleus.npc.traits.AnimationTrait.Animation;
+import com.jcwhatever.nucleus.npc.traits.nms.INmsAnimation;
+import com.jcwhatever.nucleus.npc.traits.nms.INmsAnimation.AnimationType;
+import com.jcwhatever.nucleus.npc.traits.utils.LongIntMap;
+
+import org.bukkit.entity.Entity;
+
+import java.util.Arrays;
+
+/**
+ * Central sequencer for timed NPC animations.
+ *
+ * <p>Scheduled animations are kept in a ring buffer of tick slots. Each tick, the
+ * animations that are due across all NPC's are de-duplicated and sent together
+ * so the packet of each animation is only created once.</p>
+ *
+ * <p>The number of animations sent per tick is limited. Animations over the
+ * limit are moved to the next tick.</p>
+ */
+class AnimationSequencer {
+
+    // number of tick slots in the ring buffer, must be a power of 2
+    private static final int SLOTS = 64;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int SLOT_BITS = 6;
+
+    private static final int MAX_ANIMATIONS_PER_TICK = 500;
+
+    private static AnimationSequencer _instance;
+
+    /**
+     * Get the shared sequencer.
+     */
+    static AnimationSequencer get() {
+        if (_instance == null)
+            _instance = new AnimationSequencer();
+
+        return _instance;
+    }
+
+    private final INmsAnimation _handler;
+    private final Entry[] _slots = new Entry[SLOTS];
+    // keys of the animations sent in the current tick
+    private final LongIntMap _sent = new LongIntMap(50);
+
+    private Entity[] _dueEntities = new Entity[50];
+    private AnimationType[] _dueTypes = new AnimationType[50];
+
+    // recycled entries
+    private Entry _pool;
+
+    private int _cursor;
+    private int _size;
+
+    /**
+     * Constructor.
+     */
+    private AnimationSequencer() {
+        _handler = NpcTraitPack.getNmsManager().getHandler("ENTITY_ANIMATION");
+
+        Scheduler.runTaskRepeat(NpcTraitPack.getPlugin(), 1, 1, new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        });
+    }
+
+    /**
+     * Get the number of scheduled animations.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Schedule an animation.
+     *
+     * @param animation  The animation trait of the NPC to animate.
+     * @param type       The animation type.
+     * @param delay      The number of ticks to wait before sending the animation.
+     *                   0 sends the animation on the next sequencer tick.
+     */
+    void schedule(Animation animation, AnimationType type, int delay) {
+
+        Entry entry = _pool;
+        if (entry != null)
+            _pool = entry.next;
+        else
+            entry = new Entry();
+
+        // a delay of 0 is due on the next tick, which visits the slot after the cursor.
+        int ticks = Math.max(0, delay) + 1;
+
+        entry.animation = animation;
+        entry.type = type;
+        entry.laps = (ticks - 1) >>> SLOT_BITS;
+
+        int slot = (_cursor + ticks) & SLOT_MASK;
+        entry.next = _slots[slot];
+        _slots[slot] = entry;
+
+        _size++;
+    }
+
+    /*
+     * Advance to the next slot and send the animations that are due.
+     */
+    private void tick() {
+
+        _cursor = (_cursor + 1) & SLOT_MASK;
+
+        Entry entry = _slots[_cursor];
+        _slots[_cursor] = null;
+
+        if (entry == null)
+            return;
+
+        int due = 0;
+        Entry overflow = null;
+
+        while (entry != null) {
+            Entry next = entry.next;
+
+            if (entry.laps > 0) {
+                // not due until the cursor comes around again.
+                entry.laps--;
+                entry.next = _slots[_cursor];
+                _slots[_cursor] = entry;
+            }
+            else if (due >= MAX_ANIMATIONS_PER_TICK) {
+                entry.next = overflow;
+                overflow = entry;
+            }
+            else {
+                Entity entity = entry.animation.isDisposed() ? null : entry.animation.getNpc().getEntity();
+
+                // the same animation on the same entity in the same tick is only sent once.
+                if (entity != null &&
+                        _sent.putIfAbsent(((long)entity.getEntityId() << 3) | entry.type.ordinal(), 0)) {
+
+                    if (due == _dueEntities.length) {
+                        _dueEntities = Arrays.copyOf(_dueEntities, due * 2);
+                        _dueTypes = Arrays.copyOf(_dueTypes, due * 2);
+                    }
+
+                    _dueEntities[due] = entity;
+                    _dueTypes[due] = entry.type;
+                    due++;
+                }
+
+                recycle(entry);
+            }
+
+            entry = next;
+        }
+
+        // animations over the limit are sent on the next tick.
+        if (overflow != null) {
+            int slot = (_cursor + 1) & SLOT_MASK;
+
+            while (overflow != null) {
+                Entry next = overflow.next;
+                overflow.next = _slots[slot];
+                _slots[slot] = overflow;
+                overflow = next;
+            }
+        }
+
+        if (_sent.size() > 0)
+            _sent.clear();
+
+        if (due == 0 || _handler == null)
+            return;
+
+        _handler.sendAnimations(_dueEntities, _dueTypes, due);
+
+        Arrays.fill(_dueEntities, 0, due, null);
+    }
+
+    /*
+     * Return an entry to the pool.
+     */
+    private void recycle(Entry entry) {
+        entry.animation = null;
+        entry.type = null;
+        entry.next = _pool;
+        _pool = entry;
+        _size--;
+    }
+
+    /*
+     * Scheduled animation.
+     */
+    private static class Entry {
+        Animation animation;
+        AnimationType type;
+        int laps;
+        Entry next;
+    }
+}
@@ -28,13 +28,11 @@ import com.jcwhatever.nucleus.npc.traits.nms.INmsAnimation;
 import com.jcwhatever.nucleus.providers.npc.INpc;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTraitType;
-import com.jcwhatever.nucleus.utils.player.PlayerUtils;
+import com.jcwhatever.nucleus.utils.PreCon;
 
-import org.bukkit.Location;
 import org.bukkit.entity.Entity;
-import org.bukkit.entity.Player;
 
-import java.util.Collection;
+import java.util.Arrays;
 import javax.annotation.Nullable;
 
 /*
@@ -59,8 +57,6 @@ public class AnimationTrait  extends NpcTraitType {
 
     public static class Animation extends NpcTrait {
 
-        private static Location CACHE_LOCATION = new Location(null, 0, 0, 0);
-
         /**
          * Constructor.
          *
@@ -114,21 +110,58 @@ public class AnimationTrait  extends NpcTraitType {
             return this;
         }
 
-        private void sendAnimation(INmsAnimation.AnimationType type) {
-            Entity entity = getEntity();
-            if (entity == null)
-                return;
+        /**
+         * Play an animation after a delay.
+         *
+         * <p>The animation is sent by the shared sequencer together with the animations
+         * of other NPC's that are due on the same tick.</p>
+         *
+         * @param type   The animation type.
+         * @param delay  The number of ticks to wait. 0 plays on the next tick.
+         *
+         * @return  Self for chaining.
+         */
+        public Animation play(INmsAnimation.AnimationType type, int delay) {
+            PreCon.notNull(type);
+            PreCon.positiveNumber(delay);
+
+            if (HANDLER != null)
+                AnimationSequencer.get().schedule(this, type, delay);
+
+            return this;
+        }
+
+        /**
+         * Play a timed sequence of animations.
+         *
+         * <p>The animations are sent by the shared sequencer together with the animations
+         * of other NPC's that are due on the same tick.</p>
+         *
+         * @param sequence  The animation sequence.
+         *
+         * @return  Self for chaining.
+         */
+        public Animation play(AnimationSequence sequence) {
+            PreCon.notNull(sequence);
+
+            if (HANDLER == null)
+                return this;
 
-            Collection<Player> nearby = getNearby();
-            HANDLER.sendAnimation(nearby, entity, type);
+            AnimationSequencer sequencer = AnimationSequencer.get();
+
+            for (int i=0; i < sequence.size(); i++) {
+                sequencer.schedule(this, sequence.getType(i), sequence.getTick(i));
+            }
+
+            return this;
         }
 
-        private Collection<Player> getNearby() {
+        private void sendAnimation(INmsAnimation.AnimationType type) {
             Entity entity = getEntity();
-            assert entity != null;
+            if (entity == null)
+                return;
 
-            Location location = entity.getLocation(CACHE_LOCATION);
-            return PlayerUtils.getNearbyPlayers(location, 32);
+            HANDLER.sendAnimation(entity, type);
         }
 
         @Nullable
@@ -139,4 +172,82 @@ public class AnimationTrait  extends NpcTraitType {
             return getNpc().getEntity();
         }
     }
+
+    /**
+     * A sequence of animations played at tick offsets from the start of the sequence.
+     *
+     * <p>Sequences can be reused and played on any number of NPC's.</p>
+     */
+    public static final class AnimationSequence {
+
+        private int[] _ticks = new int[5];
+        private INmsAnimation.AnimationType[] _types = new INmsAnimation.AnimationType[5];
+        private int _size;
+
+        /**
+         * Add an animation to the sequence.
+         *
+         * @param tick  The tick offset from the start of the sequence to play the animation at.
+         * @param type  The animation type.
+         *
+         * @return  Self for chaining.
+         */
+        public AnimationSequence add(int tick, INmsAnimation.AnimationType type) {
+            PreCon.positiveNumber(tick);
+            PreCon.notNull(type);
+
+            if (_size == _ticks.length) {
+                _ticks = Arrays.copyOf(_ticks, _size * 2);
+                _types = Arrays.copyOf(_types, _size * 2);
+            }
+
+            _ticks[_size] = tick;
+            _types[_size] = type;
+            _size++;
+
+            return this;
+        }
+
+        /**
+         * Get the number of animations in the sequence.
+         */
+        public int size() {
+            return _size;
+        }
+
+        /**
+         * Get the number of ticks from the start of the sequence to the last animation.
+         */
+        public int getLength() {
+            int length = 0;
+
+            for (int i=0; i < _size; i++) {
+                length = Math.max(length, _ticks[i]);
+            }
+
+            return length;
+        }
+
+        /**
+         * Get the tick offset of an animation.
+         *
+         * @param index  The index of the animation in the sequence.
+         */
+        public int getTick(int index) {
+            PreCon.isValid(index < _size, "Index out of bounds.");
+
+            return _ticks[index];
+        }
+
+        /**
+         * Get the type of an animation.
+         *
+         * @param index  The index of the animation in the sequence.
+         */
+        public INmsAnimation.AnimationType getType(int index) {
+            PreCon.isValid(index < _size, "Index out of bounds.");
+
+            return _types[index];
+        }
+    }
 }
@@ -29,19 +29,24 @@ import com.jcwhatever.nucleus.providers.npc.events.NpcDespawnEvent.NpcDespawnRea
 import com.jcwhatever.nucleus.providers.npc.events.NpcSpawnEvent.NpcSpawnReason;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTraitType;
+import com.jcwhatever.nucleus.utils.PreCon;
 import com.jcwhatever.nucleus.utils.ProjectileUtils;
-import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
-import com.jcwhatever.nucleus.managed.scheduler.IScheduledTask;
+import com.jcwhatever.nucleus.utils.coords.LocationUtils;
 
 import org.bukkit.Location;
 import org.bukkit.entity.Arrow;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.LivingEntity;
+import org.bukkit.projectiles.ProjectileSource;
+import org.bukkit.util.Vector;
 
 /**
  * Causes the NPC to fire arrows at its current target of aggression.
  *
+ * <p>The NPC does not shoot when the target is out of range or not in its
+ * line of sight.</p>
+ *
  * <p>Trait is registered with the lookup name "NpcTraitPack:Archer"</p>
  */
 public class ArcherTrait extends NpcTraitType {
@@ -62,7 +67,18 @@ public class ArcherTrait extends NpcTraitType {
 
     public static class Archer extends NpcTrait {
 
-        private IScheduledTask _task;
+        private static final double DEFAULT_RANGE = 32.0D;
+
+        private final ArcheryScheduler _scheduler = ArcheryScheduler.get();
+        private final Location _sourceLocation = new Location(null, 0, 0, 0);
+        private final Location _targetLocation = new Location(null, 0, 0, 0);
+        private final Vector _velocity = new Vector();
+
+        private double _range = DEFAULT_RANGE;
+
+        // index and phase in the archery scheduler, managed by ArcheryScheduler
+        int schedulerIndex = -1;
+        int schedulerPhase;
 
         /**
          * Constructor.
@@ -73,77 +89,143 @@ public class ArcherTrait extends NpcTraitType {
             super(type);
         }
 
+        /**
+         * Get the maximum horizontal distance the NPC will shoot at a target from.
+         */
+        public double getRange() {
+            return _range;
+        }
+
+        /**
+         * Set the maximum horizontal distance the NPC will shoot at a target from.
+         *
+         * <p>The range is limited to 64 blocks.</p>
+         *
+         * @param range  The range in blocks.
+         *
+         * @return  Self for chaining.
+         */
+        public Archer setRange(double range) {
+            PreCon.positiveNumber(range);
+
+            _range = Math.min(range, ArcheryScheduler.MAX_DISTANCE);
+            return this;
+        }
+
         @Override
         protected void onAttach(INpc npc) {
-            runTask();
+            register();
         }
 
         @Override
         protected void onSpawn(NpcSpawnReason reason) {
-            runTask();
+            register();
+        }
+
+        @Override
+        protected void onEnable() {
+            register();
         }
 
         @Override
         protected void onDespawn(NpcDespawnReason reason) {
-            stopTask();
+            _scheduler.unregister(this);
         }
 
         @Override
         protected void onDetach() {
-            stopTask();
+            _scheduler.unregister(this);
         }
 
-        private void runTask() {
-            if (_task != null)
-                return;
+        @Override
+        protected void onDisable() {
+            _scheduler.unregister(this);
+        }
+
+        /*
+         * Invoked by the archery scheduler when the NPC is due to shoot.
+         */
+        void shoot() {
 
             INpc npc = getNpc();
 
             if (!npc.isSpawned())
                 return;
 
-            _task = Scheduler.runTaskRepeat(getType().getPlugin(), 40, 40, new ShootArrow());
-        }
+            Entity entity = npc.getEntity();
+            assert entity != null;
 
-        private void stopTask() {
-            if (_task == null)
+            Entity target = npc.getNavigator().getTargetEntity();
+            if (target == null || !target.isValid() || !target.getWorld().equals(entity.getWorld()))
                 return;
 
-            _task.cancel();
-            _task = null;
-        }
+            if (entity instanceof LivingEntity) {
+                LivingEntity livingEntity = (LivingEntity)entity;
 
-        private class ShootArrow implements Runnable {
+                if (!livingEntity.hasLineOfSight(target))
+                    return;
 
-            @Override
-            public void run() {
+                LocationUtils.copy(livingEntity.getEyeLocation(), _sourceLocation);
+            }
+            else {
+                entity.getLocation(_sourceLocation);
+            }
 
-                INpc npc = getNpc();
+            if (target instanceof HumanEntity) {
+                LocationUtils.copy(ProjectileUtils.getHeartLocation((HumanEntity) target), _targetLocation);
+            }
+            else if (target instanceof LivingEntity) {
+                LocationUtils.copy(((LivingEntity) target).getEyeLocation(), _targetLocation);
+            }
+            else {
+                target.getLocation(_targetLocation);
+            }
 
-                if (!npc.isSpawned())
-                    return;
+            double deltaX = _targetLocation.getX() - _sourceLocation.getX();
+            double deltaY = _targetLocation.getY() - _sourceLocation.getY();
+            double deltaZ = _targetLocation.getZ() - _sourceLocation.getZ();
+            double distance = Math.sqrt(deltaX * deltaX + deltaZ * deltaZ);
 
-                Entity entity = npc.getEntity();
+            if (distance > _range)
+                return;
 
-                Entity target = npc.getNavigator().getTargetEntity();
-                if (target == null)
+            if (distance < 1.0D) {
+                // target is close enough to shoot directly at.
+                _velocity.setX(deltaX).setY(deltaY).setZ(deltaZ);
+                if (_velocity.lengthSquared() == 0)
                     return;
 
-                Location targetLocation;
+                _velocity.normalize().multiply(ArcheryScheduler.ARROW_SPEED);
+            }
+            else {
+                double angle = _scheduler.getLaunchAngle(distance, deltaY);
+                if (Double.isNaN(angle))
+                    return;
 
-                if (entity instanceof LivingEntity) {
-                    LivingEntity livingEntity = (LivingEntity)entity;
+                double horizontal = Math.cos(angle) * ArcheryScheduler.ARROW_SPEED / distance;
 
-                    targetLocation = target instanceof HumanEntity
-                            ? ProjectileUtils.getHeartLocation((HumanEntity) target)
-                            : livingEntity.getEyeLocation();
-                }
-                else {
-                    targetLocation = target.getLocation();
-                }
+                _velocity.setX(deltaX * horizontal)
+                        .setY(Math.sin(angle) * ArcheryScheduler.ARROW_SPEED)
+                        .setZ(deltaZ * horizontal);
+            }
 
-                ProjectileUtils.shootBallistic(entity, targetLocation, 0.01D, Arrow.class);
+            if (entity instanceof ProjectileSource) {
+                ((ProjectileSource) entity).launchProjectile(Arrow.class, _velocity);
+            }
+            else {
+                _sourceLocation.getWorld().spawnArrow(_sourceLocation,
+                        _velocity, (float)ArcheryScheduler.ARROW_SPEED, 0.0F);
             }
         }
+
+        /*
+         * Register with the archery scheduler if the NPC is able to shoot.
+         */
+        private void register() {
+            if (!isEnabled() || !getNpc().isSpawned())
+                return;
+
+            _scheduler.register(this);
+        }
     }
 }
@@ -0,0 +1,276 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits;
+
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.nucleus.npc.traits.ArcherTrait.Archer;
+
+import java.util.Arrays;
+
+/**
+ * Central scheduler that fires the arrows of all spawned {@link Archer}'s.
+ *
+ * <p>Each archer is assigned a phase within the shot interval so the shots of
+ * many archers are spread evenly across the interval instead of all firing on
+ * the same tick.</p>
+ *
+ * <p>Launch angles are found by simulating the arrow flight and are cached by
+ * horizontal distance and height difference, rounded to the nearest half block,
+ * so archers shooting at similar positions reuse the same solution. The cache is a
+ * fixed table covering {@link #MAX_DISTANCE} and {@link #MAX_HEIGHT}.</p>
+ */
+class ArcheryScheduler {
+
+    // number of ticks between shots of an archer
+    static final int SHOT_INTERVAL = 40;
+
+    // arrow launch speed in blocks per tick
+    static final double ARROW_SPEED = 1.6D;
+
+    // max horizontal distance and height difference of a target that can be solved
+    static final double MAX_DISTANCE = 64.0D;
+    static final double MAX_HEIGHT = 32.0D;
+
+    // arrow flight physics per tick
+    private static final double GRAVITY = 0.05D;
+    private static final double DRAG = 0.99D;
+    private static final int MAX_FLIGHT_TICKS = 200;
+
+    // size of the distance and height buckets of cached solutions
+    private static final double QUANTUM = 0.5D;
+    private static final int MAX_DISTANCE_INDEX = (int)(MAX_DISTANCE / QUANTUM);
+    private static final int MAX_HEIGHT_INDEX = (int)(MAX_HEIGHT / QUANTUM);
+    private static final int HEIGHT_STEPS = MAX_HEIGHT_INDEX * 2 + 1;
+
+    // value of a table entry that has not been solved
+    private static final double UNSOLVED = Double.POSITIVE_INFINITY;
+
+    // range of launch angles searched for a solution
+    private static final double MIN_ANGLE = -Math.PI / 3;
+    private static final double MAX_ANGLE = Math.PI / 4;
+    private static final int SOLVE_ITERATIONS = 16;
+
+    private static ArcheryScheduler _instance;
+
+    /**
+     * Get the shared archery scheduler.
+     */
+    static ArcheryScheduler get() {
+        if (_instance == null)
+            _instance = new ArcheryScheduler();
+
+        return _instance;
+    }
+
+    // launch angles indexed by distance index * HEIGHT_STEPS + height index offset
+    private final double[] _solutions = new double[(MAX_DISTANCE_INDEX + 1) * HEIGHT_STEPS];
+
+    // number of archers assigned to each phase
+    private final int[] _phaseCounts = new int[SHOT_INTERVAL];
+
+    private Archer[] _archers = new Archer[20];
+    private int _size;
+    private long _tick;
+
+    /**
+     * Constructor.
+     */
+    private ArcheryScheduler() {
+
+        Arrays.fill(_solutions, UNSOLVED);
+
+        Scheduler.runTaskRepeat(NpcTraitPack.getPlugin(), 1, 1, new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        });
+    }
+
+    /**
+     * Get the number of archers registered with the scheduler.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Get the launch angle needed to hit a target.
+     *
+     * <p>The angle is for the lower of the two possible arcs.</p>
+     *
+     * @param distance  The horizontal distance to the target.
+     * @param height    The height of the target relative to the launch position.
+     *
+     * @return  The launch angle in radians or {@link Double#NaN} if the target
+     * cannot be reached or is further than {@link #MAX_DISTANCE} or {@link #MAX_HEIGHT}.
+     */
+    double getLaunchAngle(double distance, double height) {
+
+        int distanceIndex = (int)Math.round(distance / QUANTUM);
+        int heightIndex = (int)Math.round(height / QUANTUM);
+
+        if (distanceIndex < 0 || distanceIndex > MAX_DISTANCE_INDEX ||
+                heightIndex < -MAX_HEIGHT_INDEX || heightIndex > MAX_HEIGHT_INDEX) {
+            return Double.NaN;
+        }
+
+        int index = distanceIndex * HEIGHT_STEPS + heightIndex + MAX_HEIGHT_INDEX;
+
+        double angle = _solutions[index];
+        if (angle == UNSOLVED) {
+            angle = solve(distanceIndex * QUANTUM, heightIndex * QUANTUM);
+            _solutions[index] = angle;
+        }
+
+        return angle;
+    }
+
+    /*
+     * Add an archer to the scheduler. The archer is assigned to the phase
+     * with the fewest archers.
+     */
+    void register(Archer archer) {
+
+        if (archer.schedulerIndex != -1)
+            return;
+
+        if (_size == _archers.length)
+            _archers = Arrays.copyOf(_archers, _size * 2);
+
+        int phase = 0;
+        for (int i = 1; i < SHOT_INTERVAL; i++) {
+            if (_phaseCounts[i] < _phaseCounts[phase])
+                phase = i;
+        }
+
+        _phaseCounts[phase]++;
+
+        _archers[_size] = archer;
+        archer.schedulerIndex = _size;
+        archer.schedulerPhase = phase;
+        _size++;
+    }
+
+    /*
+     * Remove an archer from the scheduler.
+     */
+    void unregister(Archer archer) {
+
+        int index = archer.schedulerIndex;
+        if (index == -1)
+            return;
+
+        _phaseCounts[archer.schedulerPhase]--;
+
+        // move the last archer into the removed slot.
+        int last = _size - 1;
+
+        if (index != last) {
+            _archers[index] = _archers[last];
+            _archers[index].schedulerIndex = index;
+        }
+
+        _archers[last] = null;
+        _size--;
+
+        archer.schedulerIndex = -1;
+    }
+
+    /*
+     * Fire the arrows of the archers whose phase is due.
+     */
+    private void tick() {
+
+        _tick++;
+
+        int phase = (int)(_tick % SHOT_INTERVAL);
+
+        // iterate in reverse so an archer that is removed while shooting
+        // is replaced by an archer that has already been visited.
+        for (int i = _size - 1; i >= 0; i--) {
+            Archer archer = _archers[i];
+
+            if (archer.schedulerPhase == phase)
+                archer.shoot();
+        }
+    }
+
+    /*
+     * Find the launch angle of the lower arc that passes through the
+     * specified distance and height.
+     */
+    private static double solve(double distance, double height) {
+
+        if (heightAt(MAX_ANGLE, distance) < height)
+            return Double.NaN;
+
+        double low = MIN_ANGLE;
+        double high = MAX_ANGLE;
+
+        if (heightAt(low, distance) >= height)
+            return low;
+
+        for (int i = 0; i < SOLVE_ITERATIONS; i++) {
+            double mid = (low + high) / 2;
+
+            if (heightAt(mid, distance) < height)
+                low = mid;
+            else
+                high = mid;
+        }
+
+        return (low + high) / 2;
+    }
+
+    /*
+     * Simulate the flight of an arrow launched at the specified angle and get
+     * its height when it reaches the specified horizontal distance.
+     */
+    private static double heightAt(double angle, double distance) {
+
+        double motionX = Math.cos(angle) * ARROW_SPEED;
+        double motionY = Math.sin(angle) * ARROW_SPEED;
+        double x = 0;
+        double y = 0;
+
+        for (int i = 0; i < MAX_FLIGHT_TICKS; i++) {
+
+            double nextX = x + motionX;
+            double nextY = y + motionY;
+
+            if (nextX >= distance)
+                return y + (nextY - y) * ((distance - x) / (nextX - x));
+
+            x = nextX;
+            y = nextY;
+
+            motionX *= DRAG;
+            motionY = motionY * DRAG - GRAVITY;
+        }
+
+        return Double.NEGATIVE_INFINITY;
+    }
+}
@@ -41,6 +41,7 @@ import com.jcwhatever.nucleus.npc.traits.particles.SprintDustParticlesTrait;
 import com.jcwhatever.nucleus.npc.traits.waypoints.PlannedWaypointsTrait;
 import com.jcwhatever.nucleus.npc.traits.waypoints.SimpleWaypointsTrait;
 import com.jcwhatever.nucleus.npc.traits.waypoints.plan.WaypointPairFactory;
+import com.jcwhatever.nucleus.npc.traits.waypoints.route.WaypointRouteRegistry;
 import com.jcwhatever.nucleus.providers.npc.INpcProvider;
 import com.jcwhatever.nucleus.providers.npc.events.NpcCreateEvent;
 import com.jcwhatever.nucleus.providers.npc.events.NpcEntityTypeChangeEvent;
@@ -63,6 +64,7 @@ public class NpcTraitPack extends NucleusPlugin implements Listener {
 
     private TraitNmsManager _nmsManager;
     private WaypointPairFactory _waypointFactory;
+    private WaypointRouteRegistry _waypointRoutes;
 
     public static NpcTraitPack getPlugin() {
         return _instance;
@@ -80,6 +82,10 @@ public class NpcTraitPack extends NucleusPlugin implements Listener {
         return _instance._waypointFactory;
     }
 
+    public static WaypointRouteRegistry getWaypointRoutes() {
+        return _instance._waypointRoutes;
+    }
+
     @Override
     public String getChatPrefix() {
         return "[NPCTraitPack] ";
@@ -109,6 +115,7 @@ public class NpcTraitPack extends NucleusPlugin implements Listener {
 
         _nmsManager = new TraitNmsManager();
         _waypointFactory = new WaypointPairFactory();
+        _waypointRoutes = new WaypointRouteRegistry();
 
         provider
                 .registerTrait(new AggressiveTrait())
@@ -24,10 +24,12 @@
 
 package com.jcwhatever.nucleus.npc.traits;
 
+import com.jcwhatever.nucleus.managed.scheduler.IScheduledTask;
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.nucleus.npc.traits.nms.INmsSeatHandler;
 import com.jcwhatever.nucleus.providers.npc.INpc;
 import com.jcwhatever.nucleus.providers.npc.events.NpcDespawnEvent;
 import com.jcwhatever.nucleus.providers.npc.events.NpcSpawnEvent;
-import com.jcwhatever.nucleus.providers.npc.traits.NpcRunnableTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTraitType;
 import org.bukkit.Location;
@@ -36,6 +38,8 @@ import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.util.Vector;
 
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.Nullable;
 
 /*
@@ -57,12 +61,29 @@ public class SitTrait extends NpcTraitType {
         return new Sit(this);
     }
 
-    public static class Sit extends NpcRunnableTrait {
+    public static class Sit extends NpcTrait {
 
         private static final Location CHAIR_LOCATION = new Location(null, 0, 0, 0);
         private static final Vector ZERO_VELOCITY = new Vector();
+        private static final double CHAIR_OFFSET = -1.6;
+
+        // number of ticks between client side chair updates
+        private static final int SEAT_UPDATE_INTERVAL = 5;
+
+        private static INmsSeatHandler _handler;
+        private static boolean _isHandlerLoaded;
+
+        // NPC's seated on client side chairs, updated every SEAT_UPDATE_INTERVAL ticks
+        private static final List<Sit> _seats = new ArrayList<>(20);
+        private static IScheduledTask _seatTask;
+
+        // NPC's seated on armor stand chairs, updated every tick
+        private static final List<Sit> _chairs = new ArrayList<>(10);
+        private static IScheduledTask _chairTask;
 
         private Entity _chair;
+        private Object _seat;
+        private boolean _isClientSeat = true;
 
         /**
          * Constructor.
@@ -71,33 +92,58 @@ public class SitTrait extends NpcTraitType {
          */
         public Sit(NpcTraitType type) {
             super(type);
+
+            if (!_isHandlerLoaded) {
+                _isHandlerLoaded = true;
+
+                INmsSeatHandler handler = NpcTraitPack.getNmsManager().getHandler("SEAT");
+                if (handler != null && handler.isAvailable())
+                    _handler = handler;
+            }
         }
 
-        @Override
-        protected void onRun() {
-            if (_chair == null)
-                return;
+        /**
+         * Determine if the NPC is seated on a chair that only exists on player clients.
+         *
+         * <p>Default is true. A server side armor stand chair is used instead if the
+         * server does not support client side chairs.</p>
+         */
+        public boolean isClientSeat() {
+            return _isClientSeat;
+        }
 
-            if (_chair.isValid()) {
-                _chair.setVelocity(ZERO_VELOCITY);
-            } else {
+        /**
+         * Set the NPC to be seated on a chair that only exists on player clients
+         * or on a server side armor stand.
+         *
+         * @param isClientSeat  True to use a client side chair, false to use an armor stand.
+         *
+         * @return  Self for chaining.
+         */
+        public Sit setClientSeat(boolean isClientSeat) {
+
+            if (_isClientSeat == isClientSeat)
+                return this;
+
+            _isClientSeat = isClientSeat;
+
+            if (isEnabled() && (_chair != null || _seat != null)) {
+                stand(false);
                 sit();
             }
+
+            return this;
         }
 
         @Override
         protected void onAttach(INpc npc) {
-            setInterval(1);
             if (isEnabled())
                 sit();
         }
 
         @Override
         protected void onDetach() {
-            if (_chair != null) {
-                _chair.remove();
-                _chair = null;
-            }
+            stand(false);
         }
 
         @Override
@@ -108,10 +154,7 @@ public class SitTrait extends NpcTraitType {
 
         @Override
         protected void onDespawn(NpcDespawnEvent.NpcDespawnReason reason) {
-            if (_chair != null) {
-                _chair.remove();
-                _chair = null;
-            }
+            stand(false);
         }
 
         @Override
@@ -121,10 +164,27 @@ public class SitTrait extends NpcTraitType {
 
         @Override
         protected void onDisable() {
-            if (_chair != null) {
-                _chair.eject();
-                _chair.remove();
+            stand(true);
+        }
+
+        /*
+         * Invoked by the shared client side chair task.
+         */
+        private void updateSeat() {
+            _handler.updateSeat(_seat);
+        }
+
+        /*
+         * Invoked every tick by the shared armor stand chair task.
+         */
+        private void updateChair() {
+
+            if (_chair.isValid()) {
+                _chair.setVelocity(ZERO_VELOCITY);
+            } else {
                 _chair = null;
+                _chairs.remove(this);
+                sit();
             }
         }
 
@@ -132,17 +192,92 @@ public class SitTrait extends NpcTraitType {
             if (!getNpc().isSpawned())
                 return;
 
-            if (_chair != null && _chair.isValid())
+            if (_seat != null || (_chair != null && _chair.isValid()))
                 return;
 
+            // the armor stand chair was removed
+            if (_chair != null) {
+                _chair = null;
+                _chairs.remove(this);
+            }
+
             Entity entity = getNpc().getEntity();
             assert entity != null;
 
-            _chair = spawnChair();
-            if (_chair == null)
+            // the server side chair is only used when a client side chair is not possible.
+            if (_isClientSeat && _handler != null) {
+                _seat = _handler.createSeat(entity, CHAIR_OFFSET);
+                _handler.updateSeat(_seat);
+
+                _seats.add(this);
+                startSeatTask();
+            }
+            else {
+                _chair = spawnChair();
+                if (_chair == null)
+                    return;
+
+                _chair.setPassenger(entity);
+
+                _chairs.add(this);
+                startChairTask();
+            }
+        }
+
+        /*
+         * Remove the chair.
+         */
+        private void stand(boolean eject) {
+
+            if (_seat != null) {
+                _handler.removeSeat(_seat);
+                _seat = null;
+                _seats.remove(this);
+            }
+
+            if (_chair != null) {
+                if (eject)
+                    _chair.eject();
+
+                _chair.remove();
+                _chair = null;
+                _chairs.remove(this);
+            }
+        }
+
+        /*
+         * Start the task that updates the client side chairs of all seated NPC's.
+         */
+        private static void startSeatTask() {
+            if (_seatTask != null)
                 return;
 
-            _chair.setPassenger(entity);
+            _seatTask = Scheduler.runTaskRepeat(NpcTraitPack.getPlugin(),
+                    SEAT_UPDATE_INTERVAL, SEAT_UPDATE_INTERVAL, new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = _seats.size() - 1; i >= 0; i--) {
+                        _seats.get(i).updateSeat();
+                    }
+                }
+            });
+        }
+
+        /*
+         * Start the task that keeps the armor stand chairs of all seated NPC's in place.
+         */
+        private static void startChairTask() {
+            if (_chairTask != null)
+                return;
+
+            _chairTask = Scheduler.runTaskRepeat(NpcTraitPack.getPlugin(), 1, 1, new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = _chairs.size() - 1; i >= 0; i--) {
+                        _chairs.get(i).updateChair();
+                    }
+                }
+            });
         }
 
         @Nullable
@@ -151,7 +286,7 @@ public class SitTrait extends NpcTraitType {
             if (location == null)
                 return null;
 
-            location.add(0, -1.6, 0);
+            location.add(0, CHAIR_OFFSET, 0);
             ArmorStand chair = (ArmorStand)location.getWorld().spawnEntity(location, EntityType.ARMOR_STAND);
             chair.setVisible(false);
             chair.setGravity(false);
@@ -159,4 +294,3 @@ public class SitTrait extends NpcTraitType {
         }
     }
 }
-
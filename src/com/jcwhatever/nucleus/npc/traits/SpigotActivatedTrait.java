@@ -28,19 +28,33 @@ import com.jcwhatever.nucleus.npc.traits.nms.INmsSpigotActivationHandler;
 import com.jcwhatever.nucleus.providers.npc.INpc;
 import com.jcwhatever.nucleus.providers.npc.events.NpcDespawnEvent.NpcDespawnReason;
 import com.jcwhatever.nucleus.providers.npc.events.NpcSpawnEvent.NpcSpawnReason;
+import com.jcwhatever.nucleus.providers.npc.traits.INpcTraits;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTraitType;
 import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
 import com.jcwhatever.nucleus.managed.scheduler.IScheduledTask;
+import com.jcwhatever.nucleus.utils.PreCon;
 
+import org.bukkit.Location;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
 
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
- * Keeps an NPC entity activated so its Minecraft AI is run at full speed
- * even when a player is not nearby.
+ * Keeps an NPC entity activated so its Minecraft AI is run even when a player
+ * is not nearby.
+ *
+ * <p>How often the entity is activated depends on its {@link ActivationTier}, which is
+ * chosen by the distance to the closest player. An NPC that has one of its full activity
+ * traits enabled always uses the first tier.</p>
  *
  * <p>Spigot specific feature.</p>
  */
@@ -60,10 +74,86 @@ public class SpigotActivatedTrait extends NpcTraitType {
         return new SpigotActivated(this);
     }
 
+    /**
+     * Activation rate of NPC's within a distance of the closest player.
+     */
+    public static final class ActivationTier {
+
+        private final double _maxDistance;
+        private final double _maxDistanceSquared;
+        private final int _interval;
+
+        /**
+         * Constructor.
+         *
+         * @param maxDistance  The max distance to the closest player.
+         * @param interval     The number of ticks between activations. 1 activates every tick.
+         */
+        public ActivationTier(double maxDistance, int interval) {
+            PreCon.positiveNumber(maxDistance);
+            PreCon.greaterThanZero(interval);
+
+            _maxDistance = maxDistance;
+            _maxDistanceSquared = maxDistance * maxDistance;
+            _interval = interval;
+        }
+
+        /**
+         * Get the max distance to the closest player.
+         */
+        public double getMaxDistance() {
+            return _maxDistance;
+        }
+
+        /**
+         * Get the number of ticks between activations.
+         */
+        public int getInterval() {
+            return _interval;
+        }
+    }
+
     public static class SpigotActivated extends NpcTrait {
 
+        // number of ticks between activation tier updates of each NPC
+        private static final int TIER_UPDATE_INTERVAL = 20;
+
+        private static final List<ActivationTier> DEFAULT_TIERS = Collections.unmodifiableList(Arrays.asList(
+                new ActivationTier(48, 1),
+                new ActivationTier(96, 4),
+                new ActivationTier(Double.MAX_VALUE, 20)
+        ));
+
+        private static final Set<String> DEFAULT_FULL_ACTIVITY_TRAITS = Collections.unmodifiableSet(
+                new HashSet<>(Arrays.asList(
+                        NpcTraitPack.getLookup("Aggressive"),
+                        NpcTraitPack.getLookup("Archer")
+                )));
+
+        private static final Comparator<ActivationTier> TIER_COMPARATOR = new Comparator<ActivationTier>() {
+            @Override
+            public int compare(ActivationTier o1, ActivationTier o2) {
+                return Double.compare(o1._maxDistance, o2._maxDistance);
+            }
+        };
+
+        private static final Location NPC_LOCATION = new Location(null, 0, 0, 0);
+        private static final Location PLAYER_LOCATION = new Location(null, 0, 0, 0);
+
         private static IScheduledTask _task;
-        private static Map<Entity, SpigotActivated> _entities = new WeakHashMap<>(20);
+        private static INmsSpigotActivationHandler _handler;
+        private static int _tick;
+
+        // NMS handles of registered entities, their activation intervals and the traits
+        // they belong to. Only spawned and enabled traits are registered.
+        private static Object[] _handles = new Object[20];
+        private static int[] _intervals = new int[20];
+        private static SpigotActivated[] _traits = new SpigotActivated[20];
+        private static int _size;
+
+        private int _registryIndex = -1;
+        private List<ActivationTier> _tiers = DEFAULT_TIERS;
+        private Set<String> _fullActivityTraits = DEFAULT_FULL_ACTIVITY_TRAITS;
 
         /**
          * Constructor.
@@ -80,39 +170,245 @@ public class SpigotActivatedTrait extends NpcTraitType {
                 if (handler == null || !handler.isAvailable())
                     return;
 
+                _handler = handler;
+
                 _task = Scheduler.runTaskRepeat(NpcTraitPack.getPlugin(), 1, 1, new Runnable() {
 
                     @Override
                     public void run() {
+                        _tick++;
 
-                        for (SpigotActivated trait : _entities.values()) {
-
-                            INpc npc = trait.getNpc();
-                            if (!npc.isSpawned() || !trait.isEnabled() || trait.isDisposed())
-                                continue;
-
-                            Entity entity = npc.getEntity();
-                            handler.activateEntity(entity);
+                        // update the tiers of a portion of the NPC's each tick so the
+                        // player distance checks are spread out.
+                        for (int i = _tick % TIER_UPDATE_INTERVAL; i < _size; i += TIER_UPDATE_INTERVAL) {
+                            _intervals[i] = _traits[i].getInterval();
                         }
+
+                        if (_size > 0)
+                            handler.activateHandles(_handles, _intervals, _size);
                     }
                 });
             }
         }
 
+        /**
+         * Get the activation tiers in order of distance.
+         *
+         * @return  An unmodifiable list.
+         */
+        public List<ActivationTier> getTiers() {
+            return _tiers;
+        }
+
+        /**
+         * Set the activation tiers.
+         *
+         * <p>An NPC that is further from the closest player than the max distance
+         * of every tier is not activated.</p>
+         *
+         * @param tiers  The tiers.
+         *
+         * @return  Self for chaining.
+         */
+        public SpigotActivated setTiers(Collection<ActivationTier> tiers) {
+            PreCon.notNull(tiers);
+            PreCon.isValid(!tiers.isEmpty(), "tiers cannot be empty.");
+
+            List<ActivationTier> list = new ArrayList<>(tiers);
+            Collections.sort(list, TIER_COMPARATOR);
+
+            _tiers = Collections.unmodifiableList(list);
+            updateInterval();
+
+            return this;
+        }
+
+        /**
+         * Get the lookup names of traits that cause the NPC to use the first
+         * activation tier while they are enabled.
+         *
+         * @return  An unmodifiable set.
+         */
+        public Set<String> getFullActivityTraits() {
+            return Collections.unmodifiableSet(_fullActivityTraits);
+        }
+
+        /**
+         * Add a trait that causes the NPC to use the first activation tier while
+         * it is enabled.
+         *
+         * @param lookupName  The lookup name of the trait.
+         *
+         * @return  Self for chaining.
+         */
+        public SpigotActivated addFullActivityTrait(String lookupName) {
+            PreCon.notNullOrEmpty(lookupName);
+
+            if (_fullActivityTraits == DEFAULT_FULL_ACTIVITY_TRAITS)
+                _fullActivityTraits = new HashSet<>(DEFAULT_FULL_ACTIVITY_TRAITS);
+
+            _fullActivityTraits.add(lookupName);
+            updateInterval();
+
+            return this;
+        }
+
+        /**
+         * Remove a trait that causes the NPC to use the first activation tier.
+         *
+         * @param lookupName  The lookup name of the trait.
+         *
+         * @return  Self for chaining.
+         */
+        public SpigotActivated removeFullActivityTrait(String lookupName) {
+            PreCon.notNullOrEmpty(lookupName);
+
+            if (_fullActivityTraits == DEFAULT_FULL_ACTIVITY_TRAITS)
+                _fullActivityTraits = new HashSet<>(DEFAULT_FULL_ACTIVITY_TRAITS);
+
+            _fullActivityTraits.remove(lookupName);
+            updateInterval();
+
+            return this;
+        }
+
         @Override
         protected void onSpawn(NpcSpawnReason reason) {
-
-            Entity entity = getNpc().getEntity();
-            if (entity != null)
-                _entities.put(entity, this);
+            if (isEnabled())
+                register();
         }
 
         @Override
         protected void onDespawn(NpcDespawnReason reason) {
+            unregister();
+        }
+
+        @Override
+        protected void onEnable() {
+            if (getNpc().isSpawned())
+                register();
+        }
+
+        @Override
+        protected void onDisable() {
+            unregister();
+        }
+
+        @Override
+        protected void onDetach() {
+            unregister();
+        }
+
+        /*
+         * Get the number of ticks between activations from the NPC's enabled
+         * traits and the distance to the closest player.
+         *
+         * Returns 0 if the NPC should not be activated.
+         */
+        private int getInterval() {
+
+            INpcTraits traits = getNpc().getTraits();
+
+            for (String lookup : _fullActivityTraits) {
+                if (traits.isEnabled(lookup))
+                    return _tiers.get(0)._interval;
+            }
 
             Entity entity = getNpc().getEntity();
-            if (entity != null)
-                _entities.remove(entity);
+            if (entity == null)
+                return 0;
+
+            Location location = entity.getLocation(NPC_LOCATION);
+            ActivationTier first = _tiers.get(0);
+            double closest = Double.MAX_VALUE;
+
+            for (Player player : location.getWorld().getPlayers()) {
+                double distance = player.getLocation(PLAYER_LOCATION).distanceSquared(location);
+
+                // no closer player can change the tier once the first tier is matched.
+                if (distance <= first._maxDistanceSquared)
+                    return first._interval;
+
+                if (distance < closest)
+                    closest = distance;
+            }
+
+            for (ActivationTier tier : _tiers) {
+                if (closest <= tier._maxDistanceSquared)
+                    return tier._interval;
+            }
+
+            return 0;
+        }
+
+        /*
+         * Update the activation interval of a registered NPC.
+         */
+        private void updateInterval() {
+            if (_registryIndex != -1)
+                _intervals[_registryIndex] = getInterval();
+        }
+
+        /*
+         * Add the NPC entity handle to the activation registry.
+         */
+        private void register() {
+
+            if (_handler == null)
+                return;
+
+            Entity entity = getNpc().getEntity();
+            if (entity == null)
+                return;
+
+            Object handle = _handler.getHandle(entity);
+            if (handle == null)
+                return;
+
+            // entity may have changed since the trait was registered
+            if (_registryIndex != -1) {
+                _handles[_registryIndex] = handle;
+                updateInterval();
+                return;
+            }
+
+            if (_size == _handles.length) {
+                _handles = Arrays.copyOf(_handles, _size * 2);
+                _intervals = Arrays.copyOf(_intervals, _size * 2);
+                _traits = Arrays.copyOf(_traits, _size * 2);
+            }
+
+            _handles[_size] = handle;
+            _traits[_size] = this;
+            _registryIndex = _size;
+            _size++;
+
+            updateInterval();
+        }
+
+        /*
+         * Remove the NPC entity handle from the activation registry.
+         */
+        private void unregister() {
+
+            if (_registryIndex == -1)
+                return;
+
+            // move the last entry into the removed slot.
+            int last = _size - 1;
+
+            if (_registryIndex != last) {
+                _handles[_registryIndex] = _handles[last];
+                _intervals[_registryIndex] = _intervals[last];
+                _traits[_registryIndex] = _traits[last];
+                _traits[_registryIndex]._registryIndex = _registryIndex;
+            }
+
+            _handles[last] = null;
+            _traits[last] = null;
+            _size--;
+
+            _registryIndex = -1;
         }
     }
 }
@@ -54,6 +54,32 @@ public interface INmsAnimation extends INmsHandler {
      */
     void sendAnimation(Collection<? extends Player> recipients, Entity animated, AnimationType type);
 
+    /**
+     * Send animation packet to the players that are tracking the animated entity.
+     *
+     * <p>The recipients are taken from the server entity tracker so the entity is only
+     * animated for players that can see it. Packets for the same entity and animation
+     * in the same tick are reused.</p>
+     *
+     * @param animated  The entity being animated.
+     * @param type      The animation type.
+     */
+    void sendAnimation(Entity animated, AnimationType type);
+
+    /**
+     * Send a batch of animation packets to the players that are tracking each
+     * animated entity.
+     *
+     * <p>Packets are sent through each recipients connection so they are received
+     * in order with packets already queued for the recipient. The packet of an
+     * animation is created once and shared by all recipients.</p>
+     *
+     * @param animated  The entities being animated.
+     * @param types     The animation type of the entity at the same index.
+     * @param size      The number of animations in the arrays, starting from index 0.
+     */
+    void sendAnimations(Entity[] animated, AnimationType[] types, int size);
+
     enum AnimationType {
         ARM_SWING,
         TAKE_DAMAGE,
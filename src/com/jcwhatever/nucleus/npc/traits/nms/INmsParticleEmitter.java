@@ -0,0 +1,79 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.nms;
+
+import com.jcwhatever.nucleus.utils.nms.INmsHandler;
+
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+
+/**
+ * Interface for a particle packet handler.
+ *
+ * <p>Particle packets are created once and sent to each recipient so the
+ * recipients can be chosen by the caller.</p>
+ */
+public interface INmsParticleEmitter extends INmsHandler {
+
+    /**
+     * Create a particle packet.
+     *
+     * @param type     The particle type.
+     * @param x        The X coordinates of the particles.
+     * @param y        The Y coordinates of the particles.
+     * @param z        The Z coordinates of the particles.
+     * @param offsetX  The max random X offset of each particle.
+     * @param offsetY  The max random Y offset of each particle.
+     * @param offsetZ  The max random Z offset of each particle.
+     * @param speed    The particle speed.
+     * @param count    The number of particles.
+     * @param data     The particle data. Used by {@link ParticleType#BLOCK_DUST} as the block ID.
+     *
+     * @return  The packet.
+     */
+    Object createPacket(ParticleType type, double x, double y, double z,
+                        float offsetX, float offsetY, float offsetZ,
+                        float speed, int count, int data);
+
+    /**
+     * Send a packet created by the handler to multiple recipients.
+     *
+     * @param recipients  The packet recipients.
+     * @param packet      The packet.
+     */
+    void sendPacket(Collection<? extends Player> recipients, Object packet);
+
+    enum ParticleType {
+        SMOKE_NORMAL,
+        FLAME,
+        PORTAL,
+        ENCHANTMENT_TABLE,
+        REDSTONE,
+        BLOCK_DUST,
+        HEART,
+        EXPLOSION_LARGE
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.nms;
+
+import com.jcwhatever.nucleus.utils.nms.INmsHandler;
+
+import org.bukkit.entity.Entity;
+
+/**
+ * Interface for a handler that seats entities on a chair that only exists
+ * on player clients.
+ *
+ * <p>The chair is an invisible armor stand that is never added to the server world.
+ * The spawn and attach packets are sent to the players tracking the seated entity.</p>
+ */
+public interface INmsSeatHandler extends INmsHandler {
+
+    /**
+     * Create a client side chair for an entity.
+     *
+     * <p>The chair is not shown to any player until it is updated.</p>
+     *
+     * @param passenger  The entity to seat.
+     * @param yOffset    The offset of the chair from the entity location on the Y axis.
+     *
+     * @return  The chair.
+     */
+    Object createSeat(Entity passenger, double yOffset);
+
+    /**
+     * Update a chair.
+     *
+     * <p>Shows the chair to players that started tracking the seated entity since the
+     * last update, removes it from players that stopped tracking the entity and moves
+     * the chair if the entity has moved.</p>
+     *
+     * @param seat  The chair returned from {@link #createSeat}.
+     */
+    void updateSeat(Object seat);
+
+    /**
+     * Remove a chair from the clients it was shown to.
+     *
+     * @param seat  The chair returned from {@link #createSeat}.
+     */
+    void removeSeat(Object seat);
+}
@@ -28,6 +28,8 @@ import com.jcwhatever.nucleus.utils.nms.INmsHandler;
 
 import org.bukkit.entity.Entity;
 
+import javax.annotation.Nullable;
+
 /**
  * Activates entities.
  *
@@ -42,4 +44,31 @@ public interface INmsSpigotActivationHandler extends INmsHandler {
      * @param entity  The entity to activate.
      */
     void activateEntity(Entity entity);
+
+    /**
+     * Get the NMS handle of an entity.
+     *
+     * <p>Used to keep the handles of entities that are activated every tick so
+     * they can be activated without looking up the handle each time.</p>
+     *
+     * @param entity  The entity.
+     *
+     * @return  The handle or null if the entity does not have an NMS handle.
+     */
+    @Nullable
+    Object getHandle(Entity entity);
+
+    /**
+     * Activate entities using their NMS handles at the rate of their activation interval.
+     *
+     * <p>A handle is activated on the current tick if the tick is a multiple of its
+     * interval, offset by the index of the handle so handles with the same interval are
+     * not all activated on the same tick.</p>
+     *
+     * @param handles    The handles returned from {@link #getHandle}.
+     * @param intervals  The number of ticks between activations of the handle at the same index.
+     *                   1 activates every tick, 0 or less never activates.
+     * @param size       The number of handles in the array, starting from index 0.
+     */
+    void activateHandles(Object[] handles, int[] intervals, int size);
 }
@@ -27,6 +27,8 @@ package com.jcwhatever.nucleus.npc.traits.nms;
 import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
 import com.jcwhatever.nucleus.npc.traits.nms.v1_8_R2.SpigotActivationHandler_v1_8_R2;
 import com.jcwhatever.nucleus.npc.traits.nms.v1_8_R3.AnimationHandler_v1_8_R3;
+import com.jcwhatever.nucleus.npc.traits.nms.v1_8_R3.ParticleEmitter_v1_8_R3;
+import com.jcwhatever.nucleus.npc.traits.nms.v1_8_R3.SeatHandler_v1_8_R3;
 import com.jcwhatever.nucleus.npc.traits.nms.v1_8_R3.SpigotActivationHandler_v1_8_R3;
 import com.jcwhatever.nucleus.utils.nms.NmsManager;
 
@@ -42,5 +44,7 @@ public class TraitNmsManager extends NmsManager {
 
         registerHandler("v1_8_R3", "SPIGOT_ACTIVATION", SpigotActivationHandler_v1_8_R3.class);
         registerHandler("v1_8_R3", "ENTITY_ANIMATION", AnimationHandler_v1_8_R3.class);
+        registerHandler("v1_8_R3", "PARTICLE_EMITTER", ParticleEmitter_v1_8_R3.class);
+        registerHandler("v1_8_R3", "SEAT", SeatHandler_v1_8_R3.class);
     }
 }
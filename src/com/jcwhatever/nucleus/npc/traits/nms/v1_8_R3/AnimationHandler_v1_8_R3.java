@@ -24,12 +24,20 @@
 
 package com.jcwhatever.nucleus.npc.traits.nms.v1_8_R3;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import javax.annotation.Nullable;
 
 import com.jcwhatever.nucleus.npc.traits.nms.INmsAnimation;
+import com.jcwhatever.nucleus.npc.traits.utils.LongIntMap;
 import com.jcwhatever.nucleus.utils.PreCon;
 
+import net.minecraft.server.v1_8_R3.EntityPlayer;
+import net.minecraft.server.v1_8_R3.EntityTrackerEntry;
+import net.minecraft.server.v1_8_R3.MinecraftServer;
 import net.minecraft.server.v1_8_R3.PacketPlayOutAnimation;
+import net.minecraft.server.v1_8_R3.WorldServer;
 
 import org.bukkit.craftbukkit.v1_8_R3.entity.CraftEntity;
 import org.bukkit.craftbukkit.v1_8_R3.entity.CraftPlayer;
@@ -41,6 +49,11 @@ import org.bukkit.entity.Player;
  */
 public class AnimationHandler_v1_8_R3 implements INmsAnimation {
 
+    // packets created in the current tick and their index keyed by entity ID and type
+    private final List<PacketPlayOutAnimation> _packets = new ArrayList<>(20);
+    private final LongIntMap _packetIndex = new LongIntMap(20);
+    private int _packetTick;
+
     @Override
     public void sendAnimation(Player recipient, Entity animated, AnimationType type) {
         PreCon.notNull(recipient);
@@ -73,6 +86,96 @@ public class AnimationHandler_v1_8_R3 implements INmsAnimation {
         }
     }
 
+    @Override
+    public void sendAnimation(Entity animated, AnimationType type) {
+        PreCon.notNull(animated);
+        PreCon.notNull(type);
+
+        int packetType = getPacketType(type);
+        if (packetType == -1)
+            return;
+
+        net.minecraft.server.v1_8_R3.Entity handle = ((CraftEntity)animated).getHandle();
+
+        EntityTrackerEntry entry = getTrackerEntry(handle);
+        if (entry == null)
+            return;
+
+        PacketPlayOutAnimation packet = getPacket(handle, packetType);
+
+        for (EntityPlayer player : entry.trackedPlayers) {
+            player.playerConnection.sendPacket(packet);
+        }
+    }
+
+    @Override
+    public void sendAnimations(Entity[] animated, AnimationType[] types, int size) {
+        PreCon.notNull(animated);
+        PreCon.notNull(types);
+
+        for (int i=0; i < size; i++) {
+
+            int packetType = getPacketType(types[i]);
+            if (packetType == -1)
+                continue;
+
+            net.minecraft.server.v1_8_R3.Entity handle = ((CraftEntity)animated[i]).getHandle();
+
+            EntityTrackerEntry entry = getTrackerEntry(handle);
+            if (entry == null)
+                continue;
+
+            PacketPlayOutAnimation packet = getPacket(handle, packetType);
+
+            // sent through the connection so the packet is not written ahead of
+            // packets still queued for the player, such as the entity spawn.
+            for (EntityPlayer player : entry.trackedPlayers) {
+                player.playerConnection.sendPacket(packet);
+            }
+        }
+    }
+
+    /*
+     * Get the tracker entry of an entity if it has players tracking it.
+     */
+    @Nullable
+    private EntityTrackerEntry getTrackerEntry(net.minecraft.server.v1_8_R3.Entity handle) {
+
+        if (!(handle.world instanceof WorldServer))
+            return null;
+
+        EntityTrackerEntry entry = ((WorldServer)handle.world).tracker.trackedEntities.get(handle.getId());
+        if (entry == null || entry.trackedPlayers.isEmpty())
+            return null;
+
+        return entry;
+    }
+
+    /*
+     * Get an animation packet, reusing the packet if it was already created
+     * in the current tick.
+     */
+    private PacketPlayOutAnimation getPacket(net.minecraft.server.v1_8_R3.Entity handle, int packetType) {
+
+        if (_packetTick != MinecraftServer.currentTick) {
+            _packetTick = MinecraftServer.currentTick;
+            _packets.clear();
+            _packetIndex.clear();
+        }
+
+        long key = ((long)handle.getId() << 3) | packetType;
+
+        int index = _packetIndex.get(key);
+        if (index != -1)
+            return _packets.get(index);
+
+        PacketPlayOutAnimation packet = new PacketPlayOutAnimation(handle, packetType);
+        _packetIndex.put(key, _packets.size());
+        _packets.add(packet);
+
+        return packet;
+    }
+
     private int getPacketType(AnimationType type) {
         switch (type) {
             case ARM_SWING:
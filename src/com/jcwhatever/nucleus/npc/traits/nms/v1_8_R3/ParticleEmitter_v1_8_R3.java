@@ -0,0 +1,85 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.nms.v1_8_R3;
+
+import com.jcwhatever.nucleus.npc.traits.nms.INmsParticleEmitter;
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import net.minecraft.server.v1_8_R3.EnumParticle;
+import net.minecraft.server.v1_8_R3.Packet;
+import net.minecraft.server.v1_8_R3.PacketPlayOutWorldParticles;
+
+import org.bukkit.craftbukkit.v1_8_R3.entity.CraftPlayer;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+
+/**
+ * Particle emitter for v1_8_R3
+ */
+public class ParticleEmitter_v1_8_R3 implements INmsParticleEmitter {
+
+    private static final int[] NO_DATA = new int[0];
+
+    private final EnumParticle[] _particles;
+
+    public ParticleEmitter_v1_8_R3() {
+
+        ParticleType[] types = ParticleType.values();
+        _particles = new EnumParticle[types.length];
+
+        for (ParticleType type : types) {
+            _particles[type.ordinal()] = EnumParticle.valueOf(type.name());
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public Object createPacket(ParticleType type, double x, double y, double z,
+                               float offsetX, float offsetY, float offsetZ,
+                               float speed, int count, int data) {
+        PreCon.notNull(type);
+
+        return new PacketPlayOutWorldParticles(_particles[type.ordinal()], false,
+                (float)x, (float)y, (float)z, offsetX, offsetY, offsetZ, speed, count,
+                type == ParticleType.BLOCK_DUST ? new int[] { data } : NO_DATA);
+    }
+
+    @Override
+    public void sendPacket(Collection<? extends Player> recipients, Object packet) {
+        PreCon.notNull(recipients);
+        PreCon.notNull(packet);
+
+        Packet nmsPacket = (Packet)packet;
+
+        for (Player player : recipients) {
+            ((CraftPlayer) player).getHandle().playerConnection.sendPacket(nmsPacket);
+        }
+    }
+}
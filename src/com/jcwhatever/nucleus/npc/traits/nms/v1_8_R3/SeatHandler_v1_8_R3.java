@@ -0,0 +1,202 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.nms.v1_8_R3;
+
+import com.jcwhatever.nucleus.npc.traits.nms.INmsSeatHandler;
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import net.minecraft.server.v1_8_R3.EntityArmorStand;
+import net.minecraft.server.v1_8_R3.EntityPlayer;
+import net.minecraft.server.v1_8_R3.EntityTrackerEntry;
+import net.minecraft.server.v1_8_R3.Packet;
+import net.minecraft.server.v1_8_R3.PacketPlayOutAttachEntity;
+import net.minecraft.server.v1_8_R3.PacketPlayOutEntityDestroy;
+import net.minecraft.server.v1_8_R3.PacketPlayOutEntityTeleport;
+import net.minecraft.server.v1_8_R3.PacketPlayOutSpawnEntityLiving;
+import net.minecraft.server.v1_8_R3.WorldServer;
+
+import org.bukkit.craftbukkit.v1_8_R3.entity.CraftEntity;
+import org.bukkit.entity.Entity;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Seat handler for v1_8_R3
+ */
+public class SeatHandler_v1_8_R3 implements INmsSeatHandler {
+
+    // distance the passenger can move before the chair is moved
+    private static final double MOVE_DISTANCE_SQUARED = 0.25 * 0.25;
+
+    // number of updates between re-sending the attach packet to viewers.
+    private static final int ATTACH_REFRESH_UPDATES = 4;
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public Object createSeat(Entity passenger, double yOffset) {
+        PreCon.notNull(passenger);
+
+        net.minecraft.server.v1_8_R3.Entity handle = ((CraftEntity)passenger).getHandle();
+
+        // the stand is never added to the world so it is not ticked or saved.
+        EntityArmorStand stand = new EntityArmorStand(handle.world,
+                handle.locX, handle.locY + yOffset, handle.locZ);
+
+        stand.setInvisible(true);
+        stand.setGravity(false);
+
+        return new Seat(handle, stand, yOffset);
+    }
+
+    @Override
+    public void updateSeat(Object seat) {
+        PreCon.notNull(seat);
+
+        Seat chair = (Seat)seat;
+        net.minecraft.server.v1_8_R3.Entity passenger = chair.passenger;
+
+        // move the chair with the passenger
+        double dx = passenger.locX - chair.stand.locX;
+        double dy = passenger.locY + chair.yOffset - chair.stand.locY;
+        double dz = passenger.locZ - chair.stand.locZ;
+
+        if (dx * dx + dy * dy + dz * dz > MOVE_DISTANCE_SQUARED) {
+            chair.stand.setPosition(passenger.locX, passenger.locY + chair.yOffset, passenger.locZ);
+            send(chair.viewers, new PacketPlayOutEntityTeleport(chair.stand));
+        }
+
+        Set<EntityPlayer> tracked = getTrackedPlayers(chair);
+
+        // remove the chair from players that no longer track the passenger.
+        Iterator<EntityPlayer> iterator = chair.viewers.iterator();
+        while (iterator.hasNext()) {
+            EntityPlayer viewer = iterator.next();
+
+            if (!tracked.contains(viewer)) {
+                if (viewer.playerConnection != null && !viewer.dead)
+                    viewer.playerConnection.sendPacket(new PacketPlayOutEntityDestroy(chair.stand.getId()));
+
+                iterator.remove();
+            }
+        }
+
+        // A player that stops and starts tracking the passenger between updates is
+        // sent a new passenger that is not attached. Viewers are periodically sent
+        // the attach packet again to re-seat the passenger for those players.
+        Packet attach = null;
+
+        chair.updates++;
+        if (chair.updates % ATTACH_REFRESH_UPDATES == 0 && !chair.viewers.isEmpty()) {
+            attach = new PacketPlayOutAttachEntity(0, passenger, chair.stand);
+            send(chair.viewers, attach);
+        }
+
+        // show the chair to new viewers
+        Packet spawn = null;
+
+        for (EntityPlayer player : tracked) {
+
+            if (!chair.viewers.add(player))
+                continue;
+
+            if (spawn == null)
+                spawn = new PacketPlayOutSpawnEntityLiving(chair.stand);
+
+            if (attach == null)
+                attach = new PacketPlayOutAttachEntity(0, passenger, chair.stand);
+
+            player.playerConnection.sendPacket(spawn);
+            player.playerConnection.sendPacket(attach);
+        }
+    }
+
+    @Override
+    public void removeSeat(Object seat) {
+        PreCon.notNull(seat);
+
+        Seat chair = (Seat)seat;
+
+        if (chair.viewers.isEmpty())
+            return;
+
+        send(chair.viewers, new PacketPlayOutAttachEntity(0, chair.passenger, null));
+        send(chair.viewers, new PacketPlayOutEntityDestroy(chair.stand.getId()));
+
+        chair.viewers.clear();
+    }
+
+    /*
+     * Get the players tracking the passenger of a chair.
+     */
+    private Set<EntityPlayer> getTrackedPlayers(Seat chair) {
+
+        net.minecraft.server.v1_8_R3.Entity handle = chair.passenger;
+
+        if (!(handle.world instanceof WorldServer))
+            return Collections.emptySet();
+
+        EntityTrackerEntry entry = ((WorldServer)handle.world).tracker.trackedEntities.get(handle.getId());
+        if (entry == null)
+            return Collections.emptySet();
+
+        return entry.trackedPlayers;
+    }
+
+    /*
+     * Send a packet to players.
+     */
+    private void send(Set<EntityPlayer> players, Packet packet) {
+        for (EntityPlayer player : players) {
+            if (player.playerConnection != null)
+                player.playerConnection.sendPacket(packet);
+        }
+    }
+
+    /*
+     * Client side chair.
+     */
+    private static class Seat {
+
+        final net.minecraft.server.v1_8_R3.Entity passenger;
+        final EntityArmorStand stand;
+        final double yOffset;
+        int updates;
+        final Set<EntityPlayer> viewers = Collections.newSetFromMap(
+                new IdentityHashMap<EntityPlayer, Boolean>(10));
+
+        Seat(net.minecraft.server.v1_8_R3.Entity passenger, EntityArmorStand stand, double yOffset) {
+            this.passenger = passenger;
+            this.stand = stand;
+            this.yOffset = yOffset;
+        }
+    }
+}
@@ -31,6 +31,8 @@ import org.bukkit.Bukkit;
 import org.bukkit.craftbukkit.v1_8_R3.entity.CraftEntity;
 import org.bukkit.entity.Entity;
 
+import javax.annotation.Nullable;
+
 /**
  * Spigot activation handler for v1_8_R3
  */
@@ -61,4 +63,35 @@ public class SpigotActivationHandler_v1_8_R3 implements INmsSpigotActivationHand
 
         craftEntity.getHandle().activatedTick = MinecraftServer.currentTick;
     }
+
+    @Override
+    @Nullable
+    public Object getHandle(Entity entity) {
+        PreCon.notNull(entity);
+
+        if (!(entity instanceof CraftEntity))
+            return null;
+
+        return ((CraftEntity)entity).getHandle();
+    }
+
+    @Override
+    public void activateHandles(Object[] handles, int[] intervals, int size) {
+        PreCon.notNull(handles);
+        PreCon.notNull(intervals);
+
+        if (!isAvailable())
+            return;
+
+        int tick = MinecraftServer.currentTick;
+
+        for (int i=0; i < size; i++) {
+
+            int interval = intervals[i];
+            if (interval <= 0 || (interval != 1 && (tick + i) % interval != 0))
+                continue;
+
+            ((net.minecraft.server.v1_8_R3.Entity)handles[i]).activatedTick = tick;
+        }
+    }
 }
@@ -25,11 +25,13 @@
 package com.jcwhatever.nucleus.npc.traits.particles;
 
 import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.nms.INmsParticleEmitter.ParticleType;
 import com.jcwhatever.nucleus.providers.npc.INpc;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTraitType;
 
 import org.bukkit.Location;
+import org.bukkit.Sound;
 
 /**
  * Explosion effect.
@@ -61,7 +63,10 @@ public class ExplosionParticlesTrait extends NpcTraitType {
 
         @Override
         protected void onEffect(Location location) {
-            location.getWorld().createExplosion(location, 0);
+            // the explosion particle is sent to viewers only instead of creating
+            // an explosion, which is sent to every player nearby.
+            emit(ParticleType.EXPLOSION_LARGE, location, 1, 0, 0, 0);
+            location.getWorld().playSound(location, Sound.EXPLODE, 4.0F, 0.7F);
         }
     }
 }
\ No newline at end of file
@@ -25,11 +25,11 @@
 package com.jcwhatever.nucleus.npc.traits.particles;
 
 import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.nms.INmsParticleEmitter.ParticleType;
 import com.jcwhatever.nucleus.providers.npc.INpc;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTraitType;
 
-import org.bukkit.Effect;
 import org.bukkit.Location;
 
 /**
@@ -62,7 +62,8 @@ public class FireParticlesTrait extends NpcTraitType {
 
         @Override
         protected void onEffect(Location location) {
-            location.getWorld().playEffect(location, Effect.MOBSPAWNER_FLAMES, 0);
+            emit(ParticleType.FLAME, location, 4, 0.3f, 0, 0);
+            emit(ParticleType.SMOKE_NORMAL, location, 4, 0.3f, 0, 0);
         }
     }
 }
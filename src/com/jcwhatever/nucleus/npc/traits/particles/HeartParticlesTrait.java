@@ -25,15 +25,12 @@
 package com.jcwhatever.nucleus.npc.traits.particles;
 
 import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.nms.INmsParticleEmitter.ParticleType;
 import com.jcwhatever.nucleus.providers.npc.INpc;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTraitType;
 
-import org.bukkit.EntityEffect;
 import org.bukkit.Location;
-import org.bukkit.entity.Wolf;
-import org.bukkit.potion.PotionEffect;
-import org.bukkit.potion.PotionEffectType;
 
 /**
  * Floating hearts effect.
@@ -54,8 +51,6 @@ public class HeartParticlesTrait extends NpcTraitType {
 
     public static class HeartParticles extends ParticlesTrait {
 
-        private Wolf _heartsWolf;
-
         /**
          * Constructor.
          *
@@ -65,38 +60,11 @@ public class HeartParticlesTrait extends NpcTraitType {
             super(type);
         }
 
-        @Override
-        protected void onAttach(INpc npc) {
-            super.onAttach(npc);
-
-            _heartsWolf = null;
-        }
-
-        @Override
-        protected void onDisable() {
-            removeHeartsWolf();
-        }
-
         @Override
         protected void onEffect(Location location) {
-            if (_heartsWolf == null) {
-                _heartsWolf = location.getWorld().spawn(location, Wolf.class);
-                _heartsWolf.addPotionEffect(new PotionEffect(PotionEffectType.INVISIBILITY, Integer.MAX_VALUE, 2));
-            }
-            else {
-                _heartsWolf.teleport(location);
-            }
-
-            _heartsWolf.setHealth(_heartsWolf.getMaxHealth());
-            _heartsWolf.playEffect(EntityEffect.WOLF_HEARTS);
-        }
-
-        private void removeHeartsWolf() {
-            if (_heartsWolf == null)
-                return;
-
-            _heartsWolf.remove();
-            _heartsWolf = null;
+            // heart particle packets are sent directly to viewers so no
+            // entity is needed to play the effect.
+            emit(ParticleType.HEART, location, 3, 0.4f, 0, 0);
         }
     }
 }
@@ -0,0 +1,390 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.particles;
+
+import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.nms.INmsParticleEmitter;
+import com.jcwhatever.nucleus.npc.traits.nms.INmsParticleEmitter.ParticleType;
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import org.bukkit.Effect;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sends particles only to the players that can see them.
+ *
+ * <p>Emissions are queued and sent once per tick by the {@link ParticleScheduler}.
+ * Emissions are not merged: the 1.8 particle packet has a single location, so each
+ * emission is sent as one packet to each of its viewers. Queuing the emissions of a
+ * tick lets the particle budget be applied to all of them fairly.</p>
+ *
+ * <p>A player receives an emission if the particles are within the view radius and
+ * inside a cone around the direction the player is looking. The packet for an
+ * emission is built once and sent to each viewer.</p>
+ *
+ * <p>The number of particles sent each tick, counted once for each viewer, is limited by
+ * a budget that is shared by all emitters. An emission that would exceed the budget is
+ * only sent to the viewers that fit in it. The emission the budget starts at and the
+ * first viewer of a trimmed emission rotate so the same emissions and players are not
+ * always the ones left out.</p>
+ */
+public class ParticleEmitter {
+
+    // particles closer than this distance to the player eyes are always in view
+    private static final double NEAR_DISTANCE_SQUARED = 4 * 4;
+
+    private static final Location PLAYER_LOCATION = new Location(null, 0, 0, 0);
+
+    private static ParticleEmitter _instance;
+
+    /**
+     * Get the shared particle emitter.
+     */
+    public static ParticleEmitter get() {
+        if (_instance == null)
+            _instance = new ParticleEmitter();
+
+        return _instance;
+    }
+
+    private final INmsParticleEmitter _handler;
+    private final List<Player> _viewers = new ArrayList<>(20);
+    private final List<Emission> _emissions = new ArrayList<>(50);
+    private final List<Emission> _pool = new ArrayList<>(50);
+
+    private double _viewRadius = 32;
+    private double _viewRadiusSquared = _viewRadius * _viewRadius;
+    private double _viewAngle = 140;
+    private double _minViewCos = Math.cos(Math.toRadians(_viewAngle / 2));
+    private int _maxParticlesPerTick = 5000;
+    private int _tickParticles;
+    private int _tickPackets;
+    private int _lastTickParticles;
+    private int _lastTickPackets;
+    private long _flushCount;
+    private long _trimCount;
+    private boolean _isSchedulerStarted;
+
+    /**
+     * Constructor.
+     */
+    private ParticleEmitter() {
+
+        INmsParticleEmitter handler = NpcTraitPack.getNmsManager().getHandler("PARTICLE_EMITTER");
+        _handler = handler != null && handler.isAvailable() ? handler : null;
+    }
+
+    /**
+     * Get the max distance from a player that particles are sent to the player.
+     *
+     * <p>Default is 32.</p>
+     */
+    public double getViewRadius() {
+        return _viewRadius;
+    }
+
+    /**
+     * Set the max distance from a player that particles are sent to the player.
+     *
+     * @param radius  The radius.
+     */
+    public void setViewRadius(double radius) {
+        PreCon.positiveNumber(radius);
+
+        _viewRadius = radius;
+        _viewRadiusSquared = radius * radius;
+    }
+
+    /**
+     * Get the angle in degrees of the cone around the direction a player is
+     * looking that particles are sent in.
+     *
+     * <p>Default is 140.</p>
+     */
+    public double getViewAngle() {
+        return _viewAngle;
+    }
+
+    /**
+     * Set the angle in degrees of the cone around the direction a player is
+     * looking that particles are sent in.
+     *
+     * @param angle  The angle. 360 or more sends particles in every direction.
+     */
+    public void setViewAngle(double angle) {
+        PreCon.positiveNumber(angle);
+
+        _viewAngle = angle;
+        _minViewCos = angle >= 360 ? -1 : Math.cos(Math.toRadians(angle / 2));
+    }
+
+    /**
+     * Get the max number of particles sent per tick, counted once for each viewer.
+     *
+     * <p>Default is 5000.</p>
+     */
+    public int getMaxParticlesPerTick() {
+        return _maxParticlesPerTick;
+    }
+
+    /**
+     * Set the max number of particles sent per tick, counted once for each viewer.
+     *
+     * @param max  The max particles.
+     */
+    public void setMaxParticlesPerTick(int max) {
+        PreCon.positiveNumber(max);
+
+        _maxParticlesPerTick = max;
+    }
+
+    /**
+     * Queue particles to be sent to the players that can see them when the
+     * {@link ParticleScheduler} finishes its pass for the tick.
+     *
+     * <p>The scheduler is started if it is not already running.</p>
+     *
+     * @param type      The particle type.
+     * @param location  The location of the particles.
+     * @param count     The number of particles.
+     * @param offsetX   The max random X offset of each particle.
+     * @param offsetY   The max random Y offset of each particle.
+     * @param offsetZ   The max random Z offset of each particle.
+     * @param speed     The particle speed.
+     * @param data      The particle data. Used by {@link ParticleType#BLOCK_DUST} as the block ID.
+     */
+    public void emit(ParticleType type, Location location, int count,
+                     float offsetX, float offsetY, float offsetZ, float speed, int data) {
+        PreCon.notNull(type);
+        PreCon.notNull(location);
+        PreCon.notNull(location.getWorld());
+
+        // the scheduler flushes the emitter each tick
+        if (!_isSchedulerStarted) {
+            _isSchedulerStarted = true;
+            ParticleScheduler.get();
+        }
+
+        Emission emission = _pool.isEmpty() ? new Emission() : _pool.remove(_pool.size() - 1);
+
+        emission.world = location.getWorld();
+        emission.x = location.getX();
+        emission.y = location.getY();
+        emission.z = location.getZ();
+        emission.type = type;
+        emission.count = Math.max(1, count);
+        emission.offsetX = offsetX;
+        emission.offsetY = offsetY;
+        emission.offsetZ = offsetZ;
+        emission.speed = speed;
+        emission.data = data;
+
+        _emissions.add(emission);
+    }
+
+    /**
+     * Get the number of packets sent during the previous tick, counted once
+     * for each viewer.
+     */
+    public int getLastTickPackets() {
+        return _lastTickPackets;
+    }
+
+    /**
+     * Get the number of particles sent during the previous tick, counted once
+     * for each viewer.
+     */
+    public int getLastTickParticles() {
+        return _lastTickParticles;
+    }
+
+    /*
+     * Send the emissions queued during the tick. Invoked once per tick
+     * by the ParticleScheduler.
+     */
+    void flush() {
+
+        _lastTickPackets = _tickPackets;
+        _lastTickParticles = _tickParticles;
+        _tickPackets = 0;
+        _tickParticles = 0;
+
+        int size = _emissions.size();
+        if (size == 0)
+            return;
+
+        // rotate the first emission sent so emissions left over the budget change each tick.
+        int start = (int)(_flushCount++ % size);
+
+        for (int i=0; i < size; i++) {
+            send(_emissions.get((start + i) % size));
+        }
+
+        for (int i=0; i < size; i++) {
+            Emission emission = _emissions.get(i);
+            emission.world = null;
+            _pool.add(emission);
+        }
+
+        _emissions.clear();
+    }
+
+    /*
+     * Send an emission to the players that can see it.
+     */
+    private void send(Emission emission) {
+
+        getViewers(emission.world, emission.x, emission.y, emission.z);
+
+        if (_viewers.isEmpty())
+            return;
+
+        // only send to the viewers that fit in the remaining budget.
+        int maxViewers = (_maxParticlesPerTick - _tickParticles) / emission.count;
+        if (maxViewers <= 0) {
+            _viewers.clear();
+            return;
+        }
+
+        if (_viewers.size() > maxViewers) {
+
+            // rotate the viewers kept so the same players are not always left out.
+            Collections.rotate(_viewers, -(int)(_trimCount++ % _viewers.size()));
+
+            while (_viewers.size() > maxViewers) {
+                _viewers.remove(_viewers.size() - 1);
+            }
+        }
+
+        _tickParticles += emission.count * _viewers.size();
+        _tickPackets += _viewers.size();
+
+        if (_handler != null) {
+            Object packet = _handler.createPacket(emission.type, emission.x, emission.y, emission.z,
+                    emission.offsetX, emission.offsetY, emission.offsetZ,
+                    emission.speed, emission.count, emission.data);
+
+            _handler.sendPacket(_viewers, packet);
+        }
+        else {
+            Effect effect = getEffect(emission.type);
+            Location location = new Location(emission.world, emission.x, emission.y, emission.z);
+
+            for (Player player : _viewers) {
+                player.spigot().playEffect(location, effect, emission.data, 0,
+                        emission.offsetX, emission.offsetY, emission.offsetZ,
+                        emission.speed, emission.count, (int)_viewRadius);
+            }
+        }
+
+        _viewers.clear();
+    }
+
+    /*
+     * Add the players that can see a location to the viewers list.
+     */
+    private void getViewers(World world, double x, double y, double z) {
+
+        for (Player player : world.getPlayers()) {
+
+            Location eye = player.getLocation(PLAYER_LOCATION);
+
+            double dx = x - eye.getX();
+            double dy = y - (eye.getY() + player.getEyeHeight());
+            double dz = z - eye.getZ();
+            double distanceSquared = dx * dx + dy * dy + dz * dz;
+
+            if (distanceSquared > _viewRadiusSquared)
+                continue;
+
+            if (distanceSquared > NEAR_DISTANCE_SQUARED && _minViewCos > -1) {
+
+                double yaw = Math.toRadians(eye.getYaw());
+                double pitch = Math.toRadians(eye.getPitch());
+                double cosPitch = Math.cos(pitch);
+
+                double dot = -Math.sin(yaw) * cosPitch * dx +
+                        -Math.sin(pitch) * dy +
+                        Math.cos(yaw) * cosPitch * dz;
+
+                if (dot < _minViewCos * Math.sqrt(distanceSquared))
+                    continue;
+            }
+
+            _viewers.add(player);
+        }
+    }
+
+    /*
+     * Get the Bukkit effect used to send a particle type when the NMS
+     * handler is not available.
+     */
+    private static Effect getEffect(ParticleType type) {
+        switch (type) {
+            case SMOKE_NORMAL:
+                return Effect.PARTICLE_SMOKE;
+            case FLAME:
+                return Effect.FLAME;
+            case PORTAL:
+                return Effect.PORTAL;
+            case ENCHANTMENT_TABLE:
+                return Effect.FLYING_GLYPH;
+            case REDSTONE:
+                return Effect.COLOURED_DUST;
+            case BLOCK_DUST:
+                return Effect.TILE_DUST;
+            case HEART:
+                return Effect.HEART;
+            case EXPLOSION_LARGE:
+                return Effect.EXPLOSION_LARGE;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /*
+     * Particles queued to be sent at the end of the tick.
+     */
+    private static class Emission {
+
+        World world;
+        double x;
+        double y;
+        double z;
+        ParticleType type;
+        int count;
+        float offsetX;
+        float offsetY;
+        float offsetZ;
+        float speed;
+        int data;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.particles;
+
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+
+import java.util.Arrays;
+
+/**
+ * Runs all spawned and enabled {@link ParticlesTrait}'s in a single pass each tick.
+ *
+ * <p>Traits are phase aligned so all traits with the same interval run on the same
+ * tick. The emissions of a pass are queued in the shared {@link ParticleEmitter},
+ * which is flushed once at the end of the pass so the particle budget is applied
+ * to all emissions of the tick.</p>
+ */
+public class ParticleScheduler {
+
+    private static ParticleScheduler _instance;
+
+    /**
+     * Get the shared particle scheduler.
+     */
+    public static ParticleScheduler get() {
+        if (_instance == null)
+            _instance = new ParticleScheduler();
+
+        return _instance;
+    }
+
+    private final ParticleEmitter _emitter = ParticleEmitter.get();
+
+    private ParticlesTrait[] _traits = new ParticlesTrait[20];
+    private int _size;
+    private long _tick;
+    private int _lastTickRuns;
+
+    /**
+     * Constructor.
+     */
+    private ParticleScheduler() {
+
+        Scheduler.runTaskRepeat(NpcTraitPack.getPlugin(), 1, 1, new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        });
+    }
+
+    /**
+     * Get the number of traits registered with the scheduler.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Get the number of traits that were run during the previous tick.
+     */
+    public int getLastTickRuns() {
+        return _lastTickRuns;
+    }
+
+    /**
+     * Get the number of particle packets sent during the previous tick,
+     * counted once for each viewer.
+     */
+    public int getLastTickPackets() {
+        return _emitter.getLastTickPackets();
+    }
+
+    /**
+     * Get the number of particles sent during the previous tick, counted
+     * once for each viewer.
+     */
+    public int getLastTickParticles() {
+        return _emitter.getLastTickParticles();
+    }
+
+    /*
+     * Add a trait to the scheduler. The trait index is stored in the trait.
+     */
+    void register(ParticlesTrait trait) {
+
+        if (trait.schedulerIndex != -1)
+            return;
+
+        if (_size == _traits.length)
+            _traits = Arrays.copyOf(_traits, _size * 2);
+
+        _traits[_size] = trait;
+        trait.schedulerIndex = _size;
+        _size++;
+    }
+
+    /*
+     * Remove a trait from the scheduler.
+     */
+    void unregister(ParticlesTrait trait) {
+
+        int index = trait.schedulerIndex;
+        if (index == -1)
+            return;
+
+        // move the last trait into the removed slot.
+        int last = _size - 1;
+
+        if (index != last) {
+            _traits[index] = _traits[last];
+            _traits[index].schedulerIndex = index;
+        }
+
+        _traits[last] = null;
+        _size--;
+
+        trait.schedulerIndex = -1;
+    }
+
+    /*
+     * Run the traits that are due and flush the emitted particles.
+     */
+    private void tick() {
+
+        _tick++;
+
+        int runs = 0;
+
+        // iterate in reverse so a trait that disables itself while running
+        // is replaced by a trait that has already been visited.
+        for (int i = _size - 1; i >= 0; i--) {
+            ParticlesTrait trait = _traits[i];
+
+            if (_tick % trait.getInterval() != 0)
+                continue;
+
+            trait.onRun();
+            runs++;
+        }
+
+        _lastTickRuns = runs;
+        _emitter.flush();
+    }
+}
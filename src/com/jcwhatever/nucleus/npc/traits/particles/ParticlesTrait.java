@@ -24,18 +24,26 @@
 
 package com.jcwhatever.nucleus.npc.traits.particles;
 
+import com.jcwhatever.nucleus.npc.traits.nms.INmsParticleEmitter.ParticleType;
 import com.jcwhatever.nucleus.providers.npc.INpc;
-import com.jcwhatever.nucleus.providers.npc.traits.NpcRunnableTrait;
+import com.jcwhatever.nucleus.providers.npc.events.NpcDespawnEvent.NpcDespawnReason;
+import com.jcwhatever.nucleus.providers.npc.events.NpcSpawnEvent.NpcSpawnReason;
+import com.jcwhatever.nucleus.providers.npc.traits.NpcTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTraitType;
 import com.jcwhatever.nucleus.utils.PreCon;
 
 import org.bukkit.Location;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Abstract implementation of a trait that applies a particle effect
  * to an NPC.
+ *
+ * <p>Spawned and enabled traits are run by the shared {@link ParticleScheduler}
+ * instead of each trait running on its own schedule.</p>
  */
-public abstract class ParticlesTrait extends NpcRunnableTrait {
+public abstract class ParticlesTrait extends NpcTrait {
 
     private static final Location NPC_LOCATION = new Location(null, 0, 0, 0);
 
@@ -44,6 +52,10 @@ public abstract class ParticlesTrait extends NpcRunnableTrait {
     private int _currentRunCount;
     private int _height;
     private int _verticalOffset;
+    private int _interval = 1;
+
+    // index in the ParticleScheduler, managed by the scheduler
+    int schedulerIndex = -1;
 
     /**
      * Constructor.
@@ -54,10 +66,36 @@ public abstract class ParticlesTrait extends NpcRunnableTrait {
         super(type);
     }
 
+    /**
+     * Get the number of ticks between each time the effect may be played.
+     *
+     * <p>Traits with the same interval are run on the same tick.</p>
+     *
+     * <p>Default is 1.</p>
+     */
+    public int getInterval() {
+        return _interval;
+    }
+
+    /**
+     * Set the number of ticks between each time the effect may be played.
+     *
+     * @param interval  The interval. Must be greater than 0.
+     *
+     * @return  Self for chaining.
+     */
+    public ParticlesTrait setInterval(int interval) {
+        PreCon.greaterThanZero(interval, "interval");
+
+        _interval = interval;
+
+        return this;
+    }
+
     /**
      * Get the chance the effect will be played at each interval.
      *
-     * <p>1.0 is 100%</p>
+     * <p>1.0 is 100%. Default is 0.3.</p>
      */
     public float getChance() {
         return _chance;
@@ -155,9 +193,14 @@ public abstract class ParticlesTrait extends NpcRunnableTrait {
         return this;
     }
 
-    @Override
+    /**
+     * Invoked by the {@link ParticleScheduler} at the trait interval to play the effect.
+     */
     protected void onRun() {
 
+        if (_chance < 1.0f && ThreadLocalRandom.current().nextFloat() >= _chance)
+            return;
+
         Location location = getNpc().getLocation(NPC_LOCATION);
         location.add(0, _verticalOffset, 0);
 
@@ -169,7 +212,7 @@ public abstract class ParticlesTrait extends NpcRunnableTrait {
         if (_runCount > 0) {
             _currentRunCount++;
 
-            if (_runCount >= _currentRunCount) {
+            if (_currentRunCount >= _runCount) {
                 _currentRunCount = 0;
                 setEnabled(false);
             }
@@ -183,6 +226,20 @@ public abstract class ParticlesTrait extends NpcRunnableTrait {
      */
     protected abstract void onEffect(Location location);
 
+    /**
+     * Emit particles to the players that can see them using the shared {@link ParticleEmitter}.
+     *
+     * @param type      The particle type.
+     * @param location  The location of the particles.
+     * @param count     The number of particles.
+     * @param offset    The max random offset of each particle on each axis.
+     * @param speed     The particle speed.
+     * @param data      The particle data. Used by {@link ParticleType#BLOCK_DUST} as the block ID.
+     */
+    protected void emit(ParticleType type, Location location, int count, float offset, float speed, int data) {
+        ParticleEmitter.get().emit(type, location, count, offset, offset, offset, speed, data);
+    }
+
     @Override
     protected void onAttach(INpc npc) {
         _chance = 0.3f;
@@ -190,5 +247,36 @@ public abstract class ParticlesTrait extends NpcRunnableTrait {
         _currentRunCount = 0;
         _height = 1;
         _verticalOffset = 0;
+        _interval = 1;
+
+        if (npc.isSpawned() && isEnabled())
+            ParticleScheduler.get().register(this);
+    }
+
+    @Override
+    protected void onDetach() {
+        ParticleScheduler.get().unregister(this);
+    }
+
+    @Override
+    protected void onSpawn(NpcSpawnReason reason) {
+        if (isEnabled())
+            ParticleScheduler.get().register(this);
+    }
+
+    @Override
+    protected void onDespawn(NpcDespawnReason reason) {
+        ParticleScheduler.get().unregister(this);
+    }
+
+    @Override
+    protected void onEnable() {
+        if (getNpc().isSpawned())
+            ParticleScheduler.get().register(this);
+    }
+
+    @Override
+    protected void onDisable() {
+        ParticleScheduler.get().unregister(this);
     }
 }
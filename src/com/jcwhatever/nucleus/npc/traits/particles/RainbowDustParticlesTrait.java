@@ -25,11 +25,11 @@
 package com.jcwhatever.nucleus.npc.traits.particles;
 
 import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.nms.INmsParticleEmitter.ParticleType;
 import com.jcwhatever.nucleus.providers.npc.INpc;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTraitType;
 
-import org.bukkit.Effect;
 import org.bukkit.Location;
 
 /**
@@ -62,7 +62,8 @@ public class RainbowDustParticlesTrait extends NpcTraitType {
 
         @Override
         protected void onEffect(Location location) {
-            location.getWorld().playEffect(location, Effect.COLOURED_DUST, 0);
+            // a non-zero speed gives each particle a random color
+            emit(ParticleType.REDSTONE, location, 5, 0.3f, 1, 0);
         }
     }
 }
@@ -25,12 +25,12 @@
 package com.jcwhatever.nucleus.npc.traits.particles;
 
 import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.nms.INmsParticleEmitter.ParticleType;
 import com.jcwhatever.nucleus.providers.npc.INpc;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTraitType;
 import com.jcwhatever.nucleus.utils.PreCon;
 
-import org.bukkit.Effect;
 import org.bukkit.Location;
 
 /**
@@ -89,9 +89,7 @@ public class SmokeParticlesTrait extends NpcTraitType {
 
         @Override
         protected void onEffect(Location location) {
-            for (int i=0; i <= _density; i++) {
-                location.getWorld().playEffect(location, Effect.SMOKE, i);
-            }
+            emit(ParticleType.SMOKE_NORMAL, location, _density + 1, 0.2f, 0.02f, 0);
         }
     }
 }
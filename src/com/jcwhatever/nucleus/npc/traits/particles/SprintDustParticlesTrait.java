@@ -25,12 +25,12 @@
 package com.jcwhatever.nucleus.npc.traits.particles;
 
 import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.nms.INmsParticleEmitter.ParticleType;
 import com.jcwhatever.nucleus.providers.npc.INpc;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTrait;
 import com.jcwhatever.nucleus.providers.npc.traits.NpcTraitType;
 import com.jcwhatever.nucleus.utils.EnumUtils;
 
-import org.bukkit.Effect;
 import org.bukkit.Location;
 import org.bukkit.Material;
 
@@ -66,6 +66,8 @@ public class SprintDustParticlesTrait extends NpcTraitType {
 
         @Override
         protected void onAttach(INpc npc) {
+            super.onAttach(npc);
+
             _material = Material.STONE.getId();
         }
 
@@ -91,7 +93,7 @@ public class SprintDustParticlesTrait extends NpcTraitType {
 
         @Override
         protected void onEffect(Location location) {
-            location.getWorld().playEffect(location, Effect.TILE_DUST, _material);
+            emit(ParticleType.BLOCK_DUST, location, 4, 0.2f, 0.1f, _material);
         }
     }
 }
@@ -0,0 +1,196 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map of primitive long keys to primitive int values.
+ *
+ * <p>Keys and values are not boxed. {@link Long#MIN_VALUE} is reserved and
+ * cannot be used as a key.</p>
+ *
+ * <p>Not thread safe.</p>
+ */
+public class LongIntMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] _keys;
+    private int[] _values;
+    private int _mask;
+    private int _size;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity  The initial capacity.
+     */
+    public LongIntMap(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(4, capacity) * 2 - 1) << 1;
+
+        _keys = new long[tableSize];
+        _values = new int[tableSize];
+        _mask = tableSize - 1;
+
+        Arrays.fill(_keys, EMPTY);
+    }
+
+    /**
+     * Get the number of entries.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Get the value of a key.
+     *
+     * @param key  The key.
+     *
+     * @return  The value or -1 if the key is not in the map.
+     */
+    public int get(long key) {
+
+        int slot = mix(key) & _mask;
+
+        while (true) {
+            long current = _keys[slot];
+
+            if (current == key)
+                return _values[slot];
+
+            if (current == EMPTY)
+                return -1;
+
+            slot = (slot + 1) & _mask;
+        }
+    }
+
+    /**
+     * Put a value, replacing any existing value.
+     *
+     * @param key    The key.
+     * @param value  The value.
+     */
+    public void put(long key, int value) {
+        put(key, value, true);
+    }
+
+    /**
+     * Put a value only if the key is not already in the map.
+     *
+     * @param key    The key.
+     * @param value  The value.
+     *
+     * @return  True if the value was put, otherwise false.
+     */
+    public boolean putIfAbsent(long key, int value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        Arrays.fill(_keys, EMPTY);
+        _size = 0;
+    }
+
+    /**
+     * Mix the bits of a key into a well distributed hash.
+     *
+     * @param key  The key.
+     */
+    public static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int)key;
+    }
+
+    private boolean put(long key, int value, boolean replace) {
+
+        if (key == EMPTY)
+            throw new IllegalArgumentException("Invalid key.");
+
+        int slot = mix(key) & _mask;
+
+        while (true) {
+            long current = _keys[slot];
+
+            if (current == key) {
+                if (!replace)
+                    return false;
+
+                _values[slot] = value;
+                return true;
+            }
+
+            if (current == EMPTY)
+                break;
+
+            slot = (slot + 1) & _mask;
+        }
+
+        _keys[slot] = key;
+        _values[slot] = value;
+        _size++;
+
+        // keep load factor at or below 0.5
+        if (_size * 2 > _keys.length)
+            resize();
+
+        return true;
+    }
+
+    private void resize() {
+
+        long[] keys = _keys;
+        int[] values = _values;
+
+        _keys = new long[keys.length * 2];
+        _values = new int[keys.length * 2];
+        _mask = _keys.length - 1;
+
+        Arrays.fill(_keys, EMPTY);
+
+        for (int i=0; i < keys.length; i++) {
+
+            if (keys[i] == EMPTY)
+                continue;
+
+            int slot = mix(keys[i]) & _mask;
+
+            while (_keys[slot] != EMPTY)
+                slot = (slot + 1) & _mask;
+
+            _keys[slot] = keys[i];
+            _values[slot] = values[i];
+        }
+    }
+}
@@ -0,0 +1,641 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints;
+
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.providers.npc.Npcs;
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.nucleus.utils.coords.ChunkUtils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * Chunk indexed registry of despawned NPC's and online players used to decide
+ * when a despawned NPC should be respawned.
+ *
+ * <p>A despawned NPC registers the chunk its virtual position is in each time it
+ * enters a new chunk. Player movement and chunk loads look up the NPC's registered
+ * near the chunk instead of each NPC polling for nearby players. A player that moves
+ * within the same chunk triggers nearby NPC's at most once every
+ * {@link #PLAYER_TRIGGER_INTERVAL} ticks.</p>
+ *
+ * <p>NPC's that meet the respawn conditions are queued. Each tick a limited number
+ * of queued NPC's are respawned, closest to a player first. An NPC that is not
+ * ready to respawn (see {@link IVirtualNpc#canRespawn}) stays queued.</p>
+ */
+class ChunkRespawnIndex {
+
+    // min ticks between triggering NPC's near a player that moves within a chunk
+    private static final int PLAYER_TRIGGER_INTERVAL = 10;
+
+    private final Map<World, WorldIndex> _worlds = new HashMap<>(10);
+    private final Map<IVirtualNpc, WorldIndex> _npcWorlds = new HashMap<>(50);
+    private final Map<UUID, WorldIndex> _playerWorlds = new HashMap<>(50);
+    private final Map<IVirtualNpc, QueuedRespawn> _queued = new HashMap<>(10);
+    private final PriorityQueue<QueuedRespawn> _queue = new PriorityQueue<>(10, new Comparator<QueuedRespawn>() {
+        @Override
+        public int compare(QueuedRespawn o1, QueuedRespawn o2) {
+            return Double.compare(o1.distanceSquared, o2.distanceSquared);
+        }
+    });
+    private final List<QueuedRespawn> _deferred = new ArrayList<>(10);
+    private final Location _npcLocation = new Location(null, 0, 0, 0);
+
+    private final int _playerRange;
+    private final int _chunkRadius;
+    private final int _spawnsPerTick;
+
+    private int _tick;
+
+    /**
+     * Constructor.
+     *
+     * @param playerRange    The range a player must be in of a virtual NPC to trigger a respawn.
+     * @param chunkRadius    The radius of chunks around a virtual NPC that must be loaded
+     *                       to trigger a respawn.
+     * @param spawnsPerTick  The max number of NPC's to respawn per tick.
+     */
+    ChunkRespawnIndex(int playerRange, int chunkRadius, int spawnsPerTick) {
+        PreCon.greaterThanZero(playerRange);
+        PreCon.positiveNumber(chunkRadius);
+        PreCon.greaterThanZero(spawnsPerTick);
+
+        _playerRange = playerRange;
+        _chunkRadius = chunkRadius;
+        _spawnsPerTick = spawnsPerTick;
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            setPlayerLocation(player, player.getLocation());
+        }
+
+        Bukkit.getPluginManager().registerEvents(new BukkitListener(), NpcTraitPack.getPlugin());
+
+        Scheduler.runTaskRepeat(NpcTraitPack.getPlugin(), 1, 1, new Runnable() {
+            @Override
+            public void run() {
+                _tick++;
+                respawnQueued();
+            }
+        });
+    }
+
+    /**
+     * Get the number of NPC's queued to respawn.
+     */
+    int getQueueSize() {
+        return _queue.size();
+    }
+
+    /**
+     * Register or move a virtual NPC to the chunk of a location.
+     *
+     * <p>The NPC is queued to respawn if the location meets the respawn conditions.</p>
+     *
+     * @param npc       The virtual NPC.
+     * @param location  The virtual location of the NPC.
+     */
+    void register(IVirtualNpc npc, Location location) {
+        PreCon.notNull(npc);
+        PreCon.notNull(location);
+
+        WorldIndex current = _npcWorlds.get(npc);
+        if (current != null)
+            current.removeNpc(npc);
+
+        WorldIndex index = getWorldIndex(location.getWorld());
+        index.addNpc(npc, getKey(location.getBlockX() >> 4, location.getBlockZ() >> 4));
+
+        _npcWorlds.put(npc, index);
+
+        double distanceSquared = getRespawnDistance(location);
+        if (distanceSquared >= 0)
+            queue(npc, distanceSquared);
+    }
+
+    /**
+     * Unregister a virtual NPC and remove it from the respawn queue.
+     *
+     * @param npc  The virtual NPC.
+     */
+    void unregister(IVirtualNpc npc) {
+        PreCon.notNull(npc);
+
+        WorldIndex index = _npcWorlds.remove(npc);
+        if (index != null)
+            index.removeNpc(npc);
+
+        QueuedRespawn queued = _queued.remove(npc);
+        if (queued != null)
+            _queue.remove(queued);
+    }
+
+    /**
+     * Determine if a player is within range of a location.
+     *
+     * @param location  The location to check.
+     * @param range     The range.
+     */
+    boolean hasNearbyPlayer(Location location, int range) {
+        PreCon.notNull(location);
+
+        WorldIndex index = _worlds.get(location.getWorld());
+        return index != null && index.getNearestPlayer(location, range) >= 0;
+    }
+
+    /*
+     * Get the squared distance to the nearest player in range if a virtual NPC location
+     * meets the conditions for respawning. The chunks around the location must be
+     * loaded and a player must be in range.
+     *
+     * Returns -1 if the conditions are not met.
+     */
+    private double getRespawnDistance(Location location) {
+
+        WorldIndex index = _worlds.get(location.getWorld());
+        if (index == null)
+            return -1;
+
+        double distanceSquared = index.getNearestPlayer(location, _playerRange);
+        if (distanceSquared < 0)
+            return -1;
+
+        return ChunkUtils.isNearbyChunksLoaded(location.getWorld(),
+                location.getBlockX() >> 4, location.getBlockZ() >> 4, _chunkRadius)
+                ? distanceSquared
+                : -1;
+    }
+
+    /*
+     * Add a virtual NPC to the respawn queue or update its priority.
+     */
+    private void queue(IVirtualNpc npc, double distanceSquared) {
+
+        QueuedRespawn queued = _queued.get(npc);
+        if (queued != null) {
+            if (queued.distanceSquared <= distanceSquared)
+                return;
+
+            _queue.remove(queued);
+        }
+        else {
+            queued = new QueuedRespawn(npc);
+            _queued.put(npc, queued);
+        }
+
+        queued.distanceSquared = distanceSquared;
+        _queue.add(queued);
+    }
+
+    /*
+     * Respawn queued NPC's, closest to a player first, within the per tick budget.
+     */
+    private void respawnQueued() {
+
+        int budget = _spawnsPerTick;
+
+        while (budget > 0 && !_queue.isEmpty()) {
+
+            QueuedRespawn queued = _queue.poll();
+
+            // the NPC may have moved out of range while queued.
+            if (getRespawnDistance(queued.npc.getPosition(_npcLocation)) < 0) {
+                _queued.remove(queued.npc);
+                continue;
+            }
+
+            if (!queued.npc.canRespawn()) {
+                _deferred.add(queued);
+                continue;
+            }
+
+            _queued.remove(queued.npc);
+            budget--;
+
+            queued.npc.respawn();
+        }
+
+        for (QueuedRespawn queued : _deferred) {
+
+            // skip NPC's unregistered while deferred.
+            if (_queued.get(queued.npc) == queued)
+                _queue.add(queued);
+        }
+
+        _deferred.clear();
+    }
+
+    /*
+     * Get the index for a world, creating it if needed.
+     */
+    private WorldIndex getWorldIndex(World world) {
+
+        WorldIndex index = _worlds.get(world);
+        if (index == null) {
+            index = new WorldIndex(world);
+            _worlds.put(world, index);
+        }
+        return index;
+    }
+
+    /*
+     * Update the chunk a player is indexed in and trigger nearby virtual NPC's.
+     * If the chunk did not change, NPC's are only triggered if the player has not
+     * triggered them within the trigger interval.
+     */
+    private void setPlayerLocation(Player player, @Nullable Location location) {
+
+        if (Npcs.isNpc(player))
+            return;
+
+        WorldIndex current = _playerWorlds.get(player.getUniqueId());
+
+        if (location == null) {
+            if (current != null) {
+                current.removePlayer(player);
+                _playerWorlds.remove(player.getUniqueId());
+            }
+            return;
+        }
+
+        WorldIndex index = getWorldIndex(location.getWorld());
+        long key = getKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+
+        if (current == index && index.getPlayerChunk(player) == key) {
+
+            if (_tick - index.getPlayerTriggerTick(player) < PLAYER_TRIGGER_INTERVAL)
+                return;
+
+            index.setPlayerTriggerTick(player, _tick);
+            index.triggerNearPlayer(location);
+            return;
+        }
+
+        if (current != null)
+            current.removePlayer(player);
+
+        index.addPlayer(player, key);
+        index.setPlayerTriggerTick(player, _tick);
+        _playerWorlds.put(player.getUniqueId(), index);
+
+        index.triggerNearPlayer(location);
+    }
+
+    /*
+     * Get the key of a chunk.
+     */
+    private static long getKey(int chunkX, int chunkZ) {
+        return ((long)chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A despawned NPC whose virtual position is tracked.
+     */
+    interface IVirtualNpc {
+
+        /**
+         * Get the current virtual position of the NPC.
+         *
+         * @param output  The output location.
+         *
+         * @return  The output location.
+         */
+        Location getPosition(Location output);
+
+        /**
+         * Determine if the NPC has been despawned long enough to respawn.
+         */
+        boolean canRespawn();
+
+        /**
+         * Invoked when the NPC should be respawned.
+         *
+         * <p>The NPC is responsible for unregistering itself.</p>
+         */
+        void respawn();
+    }
+
+    /*
+     * A virtual NPC in the respawn queue.
+     */
+    private static class QueuedRespawn {
+
+        final IVirtualNpc npc;
+        double distanceSquared;
+
+        QueuedRespawn(IVirtualNpc npc) {
+            this.npc = npc;
+        }
+    }
+
+    /*
+     * Virtual NPC's and players of a world indexed by chunk.
+     */
+    private class WorldIndex {
+
+        final World world;
+        final Map<Long, Set<IVirtualNpc>> npcs = new HashMap<>(50);
+        final Map<IVirtualNpc, Long> npcChunks = new HashMap<>(50);
+        final Map<Long, Set<Player>> players = new HashMap<>(50);
+        final Map<UUID, Long> playerChunks = new HashMap<>(50);
+        final Map<UUID, Integer> playerTriggerTicks = new HashMap<>(50);
+
+        WorldIndex(World world) {
+            this.world = world;
+        }
+
+        void addNpc(IVirtualNpc npc, long key) {
+
+            Set<IVirtualNpc> set = npcs.get(key);
+            if (set == null) {
+                set = new HashSet<>(5);
+                npcs.put(key, set);
+            }
+
+            set.add(npc);
+            npcChunks.put(npc, key);
+        }
+
+        void removeNpc(IVirtualNpc npc) {
+
+            Long key = npcChunks.remove(npc);
+            if (key == null)
+                return;
+
+            Set<IVirtualNpc> set = npcs.get(key);
+            if (set != null) {
+                set.remove(npc);
+                if (set.isEmpty())
+                    npcs.remove(key);
+            }
+        }
+
+        long getPlayerChunk(Player player) {
+            Long key = playerChunks.get(player.getUniqueId());
+            return key != null ? key : Long.MIN_VALUE;
+        }
+
+        int getPlayerTriggerTick(Player player) {
+            Integer tick = playerTriggerTicks.get(player.getUniqueId());
+            return tick != null ? tick : _tick - PLAYER_TRIGGER_INTERVAL;
+        }
+
+        void setPlayerTriggerTick(Player player, int tick) {
+            playerTriggerTicks.put(player.getUniqueId(), tick);
+        }
+
+        void addPlayer(Player player, long key) {
+
+            Set<Player> set = players.get(key);
+            if (set == null) {
+                set = new HashSet<>(5);
+                players.put(key, set);
+            }
+
+            set.add(player);
+            playerChunks.put(player.getUniqueId(), key);
+        }
+
+        void removePlayer(Player player) {
+
+            playerTriggerTicks.remove(player.getUniqueId());
+
+            Long key = playerChunks.remove(player.getUniqueId());
+            if (key == null)
+                return;
+
+            Set<Player> set = players.get(key);
+            if (set != null) {
+                set.remove(player);
+                if (set.isEmpty())
+                    players.remove(key);
+            }
+        }
+
+        /*
+         * Get the squared distance to the nearest player in range of
+         * a location or -1 if there is none.
+         */
+        double getNearestPlayer(Location location, int range) {
+
+            if (players.isEmpty())
+                return -1;
+
+            int chunkX = location.getBlockX() >> 4;
+            int chunkZ = location.getBlockZ() >> 4;
+            int chunkRadius = (range >> 4) + 1;
+            double rangeSquared = range * range;
+            double nearest = -1;
+
+            for (int x = chunkX - chunkRadius; x <= chunkX + chunkRadius; x++) {
+                for (int z = chunkZ - chunkRadius; z <= chunkZ + chunkRadius; z++) {
+
+                    Set<Player> set = players.get(getKey(x, z));
+                    if (set == null)
+                        continue;
+
+                    for (Player player : set) {
+                        Location playerLocation = player.getLocation();
+                        if (playerLocation.getWorld() != world)
+                            continue;
+
+                        double distanceSquared = playerLocation.distanceSquared(location);
+                        if (distanceSquared <= rangeSquared &&
+                                (nearest < 0 || distanceSquared < nearest)) {
+                            nearest = distanceSquared;
+                        }
+                    }
+                }
+            }
+            return nearest;
+        }
+
+        /*
+         * Queue virtual NPC's near a player location.
+         */
+        void triggerNearPlayer(Location playerLocation) {
+
+            if (npcs.isEmpty())
+                return;
+
+            int chunkX = playerLocation.getBlockX() >> 4;
+            int chunkZ = playerLocation.getBlockZ() >> 4;
+            int chunkRadius = (_playerRange >> 4) + 1;
+            double rangeSquared = _playerRange * _playerRange;
+
+            for (int x = chunkX - chunkRadius; x <= chunkX + chunkRadius; x++) {
+                for (int z = chunkZ - chunkRadius; z <= chunkZ + chunkRadius; z++) {
+
+                    Set<IVirtualNpc> set = npcs.get(getKey(x, z));
+                    if (set == null)
+                        continue;
+
+                    for (IVirtualNpc npc : set) {
+                        Location npcLocation = npc.getPosition(_npcLocation);
+
+                        double distanceSquared = npcLocation.distanceSquared(playerLocation);
+
+                        if (distanceSquared <= rangeSquared &&
+                                ChunkUtils.isNearbyChunksLoaded(world,
+                                        npcLocation.getBlockX() >> 4, npcLocation.getBlockZ() >> 4,
+                                        _chunkRadius)) {
+                            queue(npc, distanceSquared);
+                        }
+                    }
+                }
+            }
+        }
+
+        /*
+         * Queue virtual NPC's near a loaded chunk.
+         */
+        void triggerNearChunk(int chunkX, int chunkZ) {
+
+            if (npcs.isEmpty() || players.isEmpty())
+                return;
+
+            for (int x = chunkX - _chunkRadius; x <= chunkX + _chunkRadius; x++) {
+                for (int z = chunkZ - _chunkRadius; z <= chunkZ + _chunkRadius; z++) {
+
+                    Set<IVirtualNpc> set = npcs.get(getKey(x, z));
+                    if (set == null)
+                        continue;
+
+                    for (IVirtualNpc npc : set) {
+                        Location npcLocation = npc.getPosition(_npcLocation);
+
+                        double distanceSquared = getRespawnDistance(npcLocation);
+                        if (distanceSquared >= 0)
+                            queue(npc, distanceSquared);
+                    }
+                }
+            }
+        }
+
+        void clear() {
+            for (IVirtualNpc npc : npcChunks.keySet()) {
+                _npcWorlds.remove(npc);
+
+                QueuedRespawn queued = _queued.remove(npc);
+                if (queued != null)
+                    _queue.remove(queued);
+            }
+            for (UUID playerId : playerChunks.keySet()) {
+                _playerWorlds.remove(playerId);
+            }
+            npcs.clear();
+            npcChunks.clear();
+            players.clear();
+            playerChunks.clear();
+            playerTriggerTicks.clear();
+        }
+    }
+
+    private class BukkitListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        private void onPlayerJoin(PlayerJoinEvent event) {
+            setPlayerLocation(event.getPlayer(), event.getPlayer().getLocation());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        private void onPlayerQuit(PlayerQuitEvent event) {
+            setPlayerLocation(event.getPlayer(), null);
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        private void onPlayerMove(PlayerMoveEvent event) {
+
+            Location from = event.getFrom();
+            Location to = event.getTo();
+
+            // ignore movement within the same block
+            if (from.getWorld() == to.getWorld() &&
+                    from.getBlockX() == to.getBlockX() &&
+                    from.getBlockY() == to.getBlockY() &&
+                    from.getBlockZ() == to.getBlockZ()) {
+                return;
+            }
+
+            setPlayerLocation(event.getPlayer(), to);
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        private void onPlayerTeleport(PlayerTeleportEvent event) {
+            setPlayerLocation(event.getPlayer(), event.getTo());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        private void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+            setPlayerLocation(event.getPlayer(), event.getPlayer().getLocation());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        private void onPlayerRespawn(PlayerRespawnEvent event) {
+            setPlayerLocation(event.getPlayer(), event.getRespawnLocation());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        private void onChunkLoad(ChunkLoadEvent event) {
+
+            WorldIndex index = _worlds.get(event.getWorld());
+            if (index != null)
+                index.triggerNearChunk(event.getChunk().getX(), event.getChunk().getZ());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        private void onWorldUnload(WorldUnloadEvent event) {
+
+            WorldIndex index = _worlds.remove(event.getWorld());
+            if (index != null)
+                index.clear();
+        }
+    }
+}
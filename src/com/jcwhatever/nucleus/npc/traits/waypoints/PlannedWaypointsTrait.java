@@ -25,11 +25,14 @@
 package com.jcwhatever.nucleus.npc.traits.waypoints;
 
 import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.waypoints.ChunkRespawnIndex.IVirtualNpc;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.WaypointPairFactory;
 import com.jcwhatever.nucleus.npc.traits.waypoints.plan.WaypointTimer;
 import com.jcwhatever.nucleus.npc.traits.waypoints.provider.IWaypointProvider;
+import com.jcwhatever.nucleus.npc.traits.waypoints.provider.RouteWaypointProvider;
 import com.jcwhatever.nucleus.npc.traits.waypoints.provider.SimpleWaypointProvider;
+import com.jcwhatever.nucleus.npc.traits.waypoints.route.WaypointRoute;
 import com.jcwhatever.nucleus.providers.npc.INpc;
-import com.jcwhatever.nucleus.providers.npc.Npcs;
 import com.jcwhatever.nucleus.providers.npc.events.NpcDespawnEvent;
 import com.jcwhatever.nucleus.providers.npc.events.NpcDespawnEvent.NpcDespawnReason;
 import com.jcwhatever.nucleus.providers.npc.events.NpcEvent;
@@ -41,14 +44,10 @@ import com.jcwhatever.nucleus.utils.PreCon;
 import com.jcwhatever.nucleus.utils.coords.ChunkUtils;
 import com.jcwhatever.nucleus.utils.coords.Coords2Di;
 import com.jcwhatever.nucleus.utils.coords.MutableCoords2Di;
-import com.jcwhatever.nucleus.utils.entity.EntityUtils;
-import com.jcwhatever.nucleus.utils.validate.IValidator;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
-import org.bukkit.entity.Entity;
-import org.bukkit.entity.EntityType;
-import org.bukkit.entity.Player;
+import org.bukkit.World;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
@@ -68,6 +67,9 @@ import javax.annotation.Nullable;
  *
  * <p>Waypoint location pairs are cached for reuse among multiple NPC's.</p>
  *
+ * <p>NPC's that walk the same waypoints should use a shared {@link WaypointRoute} so
+ * each NPC only holds a cursor into the route.</p>
+ *
  * <p>Recommended only for waypoints that are not dynamically generated, the waypoints are reused (not transient),
  * the path moves across many chunks and where it's important that the NPC continues pathing even when no
  * players are around to keep the path chunks loaded.</p>
@@ -82,14 +84,16 @@ import javax.annotation.Nullable;
 public class PlannedWaypointsTrait  extends NpcTraitType {
 
     public static final String NAME = "PlannedWaypoints";
-    private static final IValidator<Entity> PLAYER_VALIDATOR = new IValidator<Entity>() {
-        @Override
-        public boolean isValid(Entity element) {
-            return element instanceof Player && !Npcs.isNpc(element);
-        }
-    };
+    // a player must be within the enter range for a despawned NPC to respawn and
+    // there must be no players within the larger exit range for a spawned NPC to despawn.
+    private static final int PLAYER_ENTER_RANGE = 45;
+    private static final int PLAYER_EXIT_RANGE = 60;
 
-    private static final int PLAYER_RANGE = 45;
+    // the minimum time an NPC stays spawned or despawned before its state is changed
+    private static final long MIN_DWELL_TIME = 5000;
+
+    // the max number of NPC's respawned per tick
+    private static final int SPAWNS_PER_TICK = 2;
 
     /**
      * Constructor.
@@ -111,9 +115,12 @@ public class PlannedWaypointsTrait  extends NpcTraitType {
         private static final Location NPC_LOCATION = new Location(null, 0, 0, 0);
         private static final Location CURRENT = new Location(null, 0, 0, 0);
         private static BukkitListener _listener;
+        private static ChunkRespawnIndex _respawnIndex;
 
         private final SimpleWaypointProvider _provider = new SimpleWaypointProvider();
         private final Timer _timer = new Timer();
+        private RouteWaypointProvider _routeProvider;
+        private long _stateChangeTime;
 
         /**
          * Constructor.
@@ -127,30 +134,75 @@ public class PlannedWaypointsTrait  extends NpcTraitType {
                 _listener = new BukkitListener();
                 Bukkit.getPluginManager().registerEvents(_listener, NpcTraitPack.getPlugin());
             }
+
+            if (_respawnIndex == null)
+                _respawnIndex = new ChunkRespawnIndex(PLAYER_ENTER_RANGE, CHUNK_RADIUS, SPAWNS_PER_TICK);
         }
 
         /**
          * Set the waypoints.
          *
+         * <p>The paths between the waypoints are queued to be planned in the
+         * background. See {@link WaypointPairFactory#precompute}.</p>
+         *
          * @param locations The locations to use as waypoints.
          * @return Self for chaining.
          */
         public PlannedWaypoints setWaypoints(Collection<Location> locations) {
             PreCon.notNull(locations);
 
+            _routeProvider = null;
             _provider.reset();
             _provider.getWaypoints().addAll(locations);
 
             _timer.init(_provider);
 
+            precompute(locations);
+
             return this;
         }
 
+        /**
+         * Set the waypoints to the waypoints of a shared route.
+         *
+         * <p>If the route loops, the NPC continues around the route until the
+         * waypoints are cleared or set again.</p>
+         *
+         * @param route        The route.
+         * @param phaseOffset  The index of the route waypoint to start at.
+         *
+         * @return Self for chaining.
+         *
+         * @throws RuntimeException if a path could not be found between a pair of route waypoints.
+         */
+        public PlannedWaypoints setRoute(WaypointRoute route, int phaseOffset) {
+            PreCon.notNull(route);
+
+            _provider.reset();
+            _routeProvider = new RouteWaypointProvider(route, phaseOffset);
+
+            _timer.init(_routeProvider, route.getPath());
+
+            return this;
+        }
+
+        /**
+         * Get the shared route the waypoints are from.
+         *
+         * @return  The route or null if the waypoints are not from a route.
+         */
+        @Nullable
+        public WaypointRoute getRoute() {
+            return _routeProvider != null ? _routeProvider.getRoute() : null;
+        }
+
         /**
          * Get the number of waypoints left to path.
          */
         public int size() {
-            return _provider.getWaypoints().size();
+            return _routeProvider != null
+                    ? _routeProvider.size()
+                    : _provider.getWaypoints().size();
         }
 
         @Override
@@ -158,10 +210,16 @@ public class PlannedWaypointsTrait  extends NpcTraitType {
             setInterval(10);
         }
 
+        @Override
+        protected void onDetach() {
+            _timer.dispose();
+            super.onDetach();
+        }
+
         @Override
         protected void onRun() {
 
-            if (_provider.getCurrent(CURRENT) == null || _timer.isRunning())
+            if (getWaypointProvider().getCurrent(CURRENT) == null || _timer.isRunning() || isDwelling())
                 return;
 
             // despawn NPC and start timer if surrounding chunks are not loaded.
@@ -170,15 +228,14 @@ public class PlannedWaypointsTrait  extends NpcTraitType {
             Location npcLocation = getNpc().getLocation(NPC_LOCATION);
 
             if (!ChunkUtils.isNearbyChunksLoaded(npcLocation, CHUNK_RADIUS) ||
-                    !EntityUtils.hasNearbyEntityType(
-                            npcLocation, EntityType.PLAYER, PLAYER_RANGE, PLAYER_VALIDATOR)) {
+                    !_respawnIndex.hasNearbyPlayer(npcLocation, PLAYER_EXIT_RANGE)) {
                 despawn();
             }
         }
 
         @Override
         protected IWaypointProvider getWaypointProvider() {
-            return _provider;
+            return _routeProvider != null ? _routeProvider : _provider;
         }
 
         private void despawn() {
@@ -189,6 +246,28 @@ public class PlannedWaypointsTrait  extends NpcTraitType {
             }
         }
 
+        /*
+         * Queue the paths between waypoints to be planned in the background.
+         * Waypoints that are not all in the same world are left to fail when
+         * the path is used.
+         */
+        private void precompute(Collection<Location> locations) {
+
+            if (locations.size() < 2)
+                return;
+
+            World world = locations.iterator().next().getWorld();
+            if (world == null)
+                return;
+
+            for (Location location : locations) {
+                if (!world.equals(location.getWorld()))
+                    return;
+            }
+
+            NpcTraitPack.getWaypointPairFactory().precompute(world, locations);
+        }
+
         private void spawn(Location location) {
 
             if (isAwaitingChunkReload()) {
@@ -204,6 +283,14 @@ public class PlannedWaypointsTrait  extends NpcTraitType {
             }
         }
 
+        /*
+         * Determine if the minimum time since the NPC was spawned or
+         * despawned has not elapsed.
+         */
+        private boolean isDwelling() {
+            return System.currentTimeMillis() < _stateChangeTime + MIN_DWELL_TIME;
+        }
+
         /*
          * Determine if the trait timer is awaiting NPC respawn.
          */
@@ -236,36 +323,56 @@ public class PlannedWaypointsTrait  extends NpcTraitType {
         /*
          * Waypoint timer to run waypoint path while NPC is despawned.
          */
-        private class Timer extends WaypointTimer {
+        private class Timer extends WaypointTimer implements IVirtualNpc {
 
             @Override
             protected void onMove(Location current) {
 
-                Coords2Di chunkCoords = ChunkUtils.getChunkCoords(current, CHUNK_COORDS);
-                Location npcLocation = getNpc().getLocation(NPC_LOCATION);
-                if (npcLocation == null)
-                    return;
+                // index the chunk the virtual NPC is in so player movement and
+                // chunk loads near it can queue the respawn.
+                _respawnIndex.register(this, current);
+            }
 
-                // make sure enough chunks are loaded around the location so that
-                // spigot will allow the entity to be activated.
-                boolean isNearbyChunksLoaded = ChunkUtils.isNearbyChunksLoaded(
-                        npcLocation.getWorld(), chunkCoords.getX(), chunkCoords.getZ(), CHUNK_RADIUS);
-
-                if (isNearbyChunksLoaded &&
-                        EntityUtils.hasNearbyEntityType(
-                                current, EntityType.PLAYER, PLAYER_RANGE, PLAYER_VALIDATOR)) {
-                    stop(null);
-                    setAwaitingRespawn(AwaitRespawnReason.INVOKED);
-                    spawn(current);
-                }
+            @Override
+            public boolean canRespawn() {
+                return !isDwelling();
+            }
+
+            @Override
+            public void respawn() {
+                Location current = stop(CURRENT);
+                assert current != null;
+
+                setAwaitingRespawn(AwaitRespawnReason.INVOKED);
+                spawn(current);
+            }
+
+            @Nullable
+            @Override
+            public Location stop(@Nullable Location output) {
+                _respawnIndex.unregister(this);
+                return super.stop(output);
             }
 
             @Override
             protected void onPathComplete() {
-                _provider.reset();
+
+                if (_routeProvider != null && _routeProvider.getRoute().isLoop()) {
+
+                    // the current waypoint is the first route waypoint at the end of
+                    // the loop path. Advance so the timer restarts from the first pair.
+                    _routeProvider.next(CURRENT);
+
+                    if (!getNpc().isSpawned())
+                        start(getSpeed());
+
+                    return;
+                }
+
+                getWaypointProvider().reset();
                 getUpdateAgents().update("onFinish", getNpc());
 
-                if (!getNpc().isSpawned() && _provider.hasNext()) {
+                if (!getNpc().isSpawned() && getWaypointProvider().hasNext()) {
                     start(getSpeed());
                 }
             }
@@ -293,6 +400,7 @@ public class PlannedWaypointsTrait  extends NpcTraitType {
 
                 trait._timer.stop(null);
                 trait.setAwaitingRespawn(null);
+                trait._stateChangeTime = System.currentTimeMillis();
             }
 
             @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -302,6 +410,8 @@ public class PlannedWaypointsTrait  extends NpcTraitType {
                 if (trait == null || !trait.isEnabled())
                     return;
 
+                trait._stateChangeTime = System.currentTimeMillis();
+
                 if (event.getReason() == NpcDespawnReason.CHUNK_UNLOAD) {
 
                     trait.setAwaitingRespawn(AwaitRespawnReason.CHUNK_UNLOAD);
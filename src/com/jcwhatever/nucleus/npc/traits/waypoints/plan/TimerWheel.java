@@ -0,0 +1,183 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan;
+
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tick based hashed timing wheel that runs due {@link WaypointTimer}'s.
+ *
+ * <p>Each tick only the timers in the current slot are visited. Timers are linked
+ * directly into their slot so scheduling and cancelling is constant time.</p>
+ */
+class TimerWheel {
+
+    private static final int SLOTS = 256;
+    private static final int MASK = SLOTS - 1;
+
+    private static TimerWheel _instance;
+
+    private final WaypointTimer[] _slots = new WaypointTimer[SLOTS];
+    private final List<WaypointTimer> _due = new ArrayList<>(25);
+    private long _currentTick;
+    private int _size;
+
+    /**
+     * Get the global wheel, starting it if not started.
+     */
+    static TimerWheel get() {
+
+        if (_instance == null) {
+            _instance = new TimerWheel();
+
+            Scheduler.runTaskRepeat(NpcTraitPack.getPlugin(), 1, 1, new Runnable() {
+                @Override
+                public void run() {
+                    _instance.tick();
+                }
+            });
+        }
+
+        return _instance;
+    }
+
+    private TimerWheel() {}
+
+    /**
+     * Get the current wheel tick.
+     */
+    long getCurrentTick() {
+        return _currentTick;
+    }
+
+    /**
+     * Get the number of scheduled timers.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Schedule a timer to run after a number of ticks.
+     *
+     * <p>If the timer is already scheduled, it is rescheduled.</p>
+     *
+     * @param timer  The timer.
+     * @param ticks  The number of ticks. Values less than 1 are treated as 1.
+     */
+    void schedule(WaypointTimer timer, int ticks) {
+
+        cancel(timer);
+
+        timer.wheelDueTick = _currentTick + Math.max(1, ticks);
+        timer.wheelSlot = (int)(timer.wheelDueTick & MASK);
+
+        WaypointTimer head = _slots[timer.wheelSlot];
+
+        timer.wheelPrev = null;
+        timer.wheelNext = head;
+
+        if (head != null)
+            head.wheelPrev = timer;
+
+        _slots[timer.wheelSlot] = timer;
+        _size++;
+    }
+
+    /**
+     * Cancel a scheduled timer.
+     *
+     * @param timer  The timer.
+     */
+    void cancel(WaypointTimer timer) {
+
+        if (timer.wheelSlot == -1)
+            return;
+
+        if (timer.wheelPrev != null)
+            timer.wheelPrev.wheelNext = timer.wheelNext;
+        else
+            _slots[timer.wheelSlot] = timer.wheelNext;
+
+        if (timer.wheelNext != null)
+            timer.wheelNext.wheelPrev = timer.wheelPrev;
+
+        timer.wheelSlot = -1;
+        timer.wheelNext = null;
+        timer.wheelPrev = null;
+        _size--;
+    }
+
+    /*
+     * Advance the wheel one tick and run due timers in the current slot.
+     */
+    private void tick() {
+
+        _currentTick++;
+
+        WaypointTimer timer = _slots[(int)(_currentTick & MASK)];
+
+        // unlink due timers before running them in case a timer
+        // schedules or cancels other timers.
+        while (timer != null) {
+
+            WaypointTimer next = timer.wheelNext;
+
+            // timers more than one rotation away stay in the slot.
+            if (timer.wheelDueTick <= _currentTick) {
+                cancel(timer);
+                _due.add(timer);
+            }
+
+            timer = next;
+        }
+
+        try {
+            for (int i=0; i < _due.size(); i++) {
+                timer = _due.get(i);
+
+                // skip timers that were rescheduled by another timer.
+                if (timer.wheelSlot != -1)
+                    continue;
+
+                // a failing timer must not prevent the other due timers from running.
+                try {
+                    timer.onDue();
+                }
+                catch (RuntimeException e) {
+                    NpcTraitPack.getPlugin().getMessenger().warning(
+                            "Waypoint timer failed: " + e.getMessage());
+                }
+            }
+        }
+        finally {
+            _due.clear();
+        }
+    }
+}
@@ -28,6 +28,13 @@ import com.jcwhatever.nucleus.managed.astar.AStar;
 import com.jcwhatever.nucleus.managed.astar.IAStarResult;
 import com.jcwhatever.nucleus.managed.astar.IAStarResult.ResultStatus;
 import com.jcwhatever.nucleus.managed.astar.nodes.AStarNode;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedPairMap;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PathSegment;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PathSegmentStore;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PathSmoother;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.SegmentedPath;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.WorldBlockView;
 import com.jcwhatever.nucleus.utils.PreCon;
 import com.jcwhatever.nucleus.utils.coords.ICoords3Di;
 import com.jcwhatever.nucleus.utils.coords.MutableCoords3Di;
@@ -35,20 +42,39 @@ import org.bukkit.Location;
 import org.bukkit.World;
 
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Represents a pair of waypoints and the path between them.
  *
  * <p>Uses AStar to generate path points between the start
  * and end locations of the waypoint pair.</p>
+ *
+ * <p>The path is stored as packed coordinates (see {@link PackedCoords}) instead
+ * of the AStar result node list. The coordinates are split into {@link PathSegment}'s
+ * at chunk boundaries and interned so pairs whose paths overlap share the same
+ * segments.</p>
  */
 public class WaypointPair {
 
+    private static final PathSegmentStore _segmentStore = new PathSegmentStore();
+
+    /**
+     * Get the store used to intern the path segments of all pairs.
+     */
+    public static PathSegmentStore getSegmentStore() {
+        return _segmentStore;
+    }
+
     private final World _world;
     private final MutableCoords3Di _start = new MutableCoords3Di();
     private final MutableCoords3Di _end = new MutableCoords3Di();
-    private final IAStarResult<AStarNode> _path;
+    private final long _startKey;
+    private final long _endKey;
     private final int _hash;
+    private SegmentedPath _path;
+    private int _version;
+    private boolean _isPrecomputed;
 
     /**
      * Constructor.
@@ -57,6 +83,31 @@ public class WaypointPair {
      * @param end    The end location.
      */
     public WaypointPair(Location start, Location end) {
+        this(start, end, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param start   The start location.
+     * @param end     The end location.
+     * @param smooth  True to remove path points that can be skipped by walking in a
+     *                straight line. See {@link PathSmoother}.
+     */
+    public WaypointPair(Location start, Location end, boolean smooth) {
+        this(start, end, null, smooth);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param start   The start location.
+     * @param end     The end location.
+     * @param path    The path as packed coordinates or null to search for the path using AStar.
+     * @param smooth  True to remove path points that can be skipped by walking in a
+     *                straight line. See {@link PathSmoother}.
+     */
+    WaypointPair(Location start, Location end, @Nullable long[] path, boolean smooth) {
         PreCon.notNull(start);
         PreCon.notNull(end);
         PreCon.notNull(start.getWorld(), "start world");
@@ -67,10 +118,17 @@ public class WaypointPair {
         _end.copyFrom(end);
         _world = start.getWorld();
 
-        _hash = start.getBlockX() ^ start.getBlockY() ^ start.getBlockZ() ^
-                end.getBlockX() ^ end.getBlockY() ^ end.getBlockZ();
+        _startKey = PackedCoords.pack(start);
+        _endKey = PackedCoords.pack(end);
+        _hash = PackedPairMap.hash(_startKey, _endKey);
 
-        _path = AStar.search(start, end);
+        if (path == null)
+            path = search(start, end);
+
+        if (path != null && smooth)
+            path = PathSmoother.smooth(new WorldBlockView(_world), path);
+
+        _path = toSegmented(path);
     }
 
     /**
@@ -80,12 +138,48 @@ public class WaypointPair {
         return _world;
     }
 
+    /**
+     * Get the packed start coordinates. See {@link PackedCoords}.
+     */
+    public long getStartKey() {
+        return _startKey;
+    }
+
+    /**
+     * Get the packed end coordinates. See {@link PackedCoords}.
+     */
+    public long getEndKey() {
+        return _endKey;
+    }
+
+    /**
+     * Get the version of the pair path.
+     *
+     * <p>The version changes each time the path is repaired or the pair is invalidated
+     * so {@link WaypointPath}'s built from the pair can detect that they are stale.</p>
+     */
+    public int getVersion() {
+        return _version;
+    }
+
+    /**
+     * Determine if the path was found in the background before the pair was first
+     * used.
+     *
+     * <p>Precomputed paths are found with a grid search that requires a solid floor
+     * and does not path through water or lava. The path may differ from the path
+     * AStar finds for the same pair.</p>
+     */
+    public boolean isPrecomputed() {
+        return _isPrecomputed;
+    }
+
     /**
      * Determine if AStar was able to find a path from the start location
      * to the end location.
      */
     public boolean hasPath() {
-        return _path.getStatus() == ResultStatus.RESOLVED;
+        return _path != null;
     }
 
     /**
@@ -126,24 +220,99 @@ public class WaypointPair {
     public void getPath(List<ICoords3Di> list, boolean includeStart, boolean includeEnd) {
         PreCon.notNull(list);
 
-        if (includeStart && includeEnd) {
-            list.addAll(_path.values());
-        }
-        else {
+        if (_path == null)
+            return;
 
-            int start = includeStart ? 0 : 1;
-            int end = includeEnd ? 0 : 1;
+        int start = includeStart ? 0 : 1;
+        int end = _path.size() - (includeEnd ? 0 : 1);
 
-            list.addAll(_path.values().subList(start, _path.values().size() - end));
+        for (int i=start; i < end; i++) {
+            list.add(PackedCoords.toCoords(_path.getNode(i)));
         }
     }
 
+    /**
+     * Get the packed coordinates of a path point.
+     *
+     * @param index  The index of the path point.
+     *
+     * @return  The packed coordinates. See {@link PackedCoords}.
+     */
+    public long getPathNode(int index) {
+        PreCon.isValid(_path != null, "Pair does not have a path.");
+
+        return _path.getNode(index);
+    }
+
+    /**
+     * Get the path as a sequence of interned segments.
+     *
+     * @return  The path or null if the pair does not have a path.
+     */
+    @Nullable
+    public SegmentedPath getSegmentedPath() {
+        return _path;
+    }
+
     /**
      * Get the number of path coordinates from the start to the end of
      * the waypoint pair.
      */
     public int getPathSize() {
-        return _path.getPathDistance();
+        return _path != null ? _path.size() : 0;
+    }
+
+    /*
+     * Replace the path. Used by the cache to repair the path.
+     */
+    void setPath(long[] path) {
+        _path = toSegmented(path);
+        _version++;
+    }
+
+    /*
+     * Mark the pair as found in the background by the precomputer.
+     */
+    void setPrecomputed() {
+        _isPrecomputed = true;
+    }
+
+    /*
+     * Mark the path as changed so paths built from the pair are rebuilt.
+     */
+    void invalidate() {
+        _version++;
+    }
+
+    /*
+     * Split packed path coordinates into interned segments.
+     */
+    @Nullable
+    private static SegmentedPath toSegmented(@Nullable long[] path) {
+        return path != null && path.length > 0
+                ? new SegmentedPath(_segmentStore.split(path))
+                : null;
+    }
+
+    /*
+     * Search for a path using AStar. Also used to repair part of a path.
+     */
+    @Nullable
+    static long[] search(Location start, Location end) {
+
+        IAStarResult<AStarNode> result = AStar.search(start, end);
+        if (result.getStatus() != ResultStatus.RESOLVED)
+            return null;
+
+        List<? extends ICoords3Di> values = result.values();
+        long[] path = new long[values.size()];
+
+        for (int i=0; i < path.length; i++) {
+            ICoords3Di coords = values.get(i);
+            path[i] = PackedCoords.pack(coords.getX(), coords.getY(), coords.getZ());
+        }
+
+        return path;
     }
 
     @Override
@@ -155,7 +324,7 @@ public class WaypointPair {
     public boolean equals(Object obj) {
         return obj == this ||
                 obj instanceof WaypointPair &&
-                        ((WaypointPair) obj)._start.equals(_start) &&
-                        ((WaypointPair) obj)._end.equals(_end);
+                        ((WaypointPair) obj)._startKey == _startKey &&
+                        ((WaypointPair) obj)._endKey == _endKey;
     }
 }
@@ -0,0 +1,336 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan;
+
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedPairMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Size and weight bounded LRU cache of {@link WaypointPair}'s for a single world.
+ *
+ * <p>The weight of a pair is the number of path coordinates it holds. Pinned pairs
+ * are never evicted but still count towards the size and weight of the cache.</p>
+ *
+ * <p>Pairs are also indexed by the chunks their paths pass through. Each chunk entry
+ * holds the links of the pair path that pass through the chunk so the path links
+ * affected by a block change can be found without checking every pair or every
+ * link of a pair. A link is the part of a path between two consecutive path points
+ * and is identified by the index of its first path point.</p>
+ */
+class WaypointPairCache {
+
+    // keyed by packed start and end coordinates, access ordered so iteration
+    // starts at the least recently used pair.
+    private final PackedPairMap<WaypointPair> _pairs = new PackedPairMap<>(32);
+    private final Set<WaypointPair> _pinned = new HashSet<>(10);
+    private final Map<Long, Map<WaypointPair, LinkList>> _chunkIndex = new HashMap<>(50);
+
+    private int _weight;
+
+    /**
+     * Get the number of pairs in the cache.
+     */
+    int size() {
+        return _pairs.size();
+    }
+
+    /**
+     * Get the total weight of all pairs in the cache.
+     */
+    int getWeight() {
+        return _weight;
+    }
+
+    /**
+     * Get a cached pair and mark it as recently used.
+     *
+     * @param start  The packed start coordinates of the pair.
+     * @param end    The packed end coordinates of the pair.
+     *
+     * @return  The pair or null if not cached.
+     */
+    @Nullable
+    WaypointPair get(long start, long end) {
+        return _pairs.get(start, end);
+    }
+
+    /**
+     * Determine if a pair is cached.
+     *
+     * @param pair  The pair to check.
+     */
+    boolean contains(WaypointPair pair) {
+        return _pairs.peek(pair.getStartKey(), pair.getEndKey()) == pair;
+    }
+
+    /**
+     * Get the cached pairs whose paths pass through a chunk and the links
+     * of each pair path that pass through the chunk.
+     *
+     * @param chunkX  The chunk X coordinate.
+     * @param chunkZ  The chunk Z coordinate.
+     *
+     * @return  The pairs mapped to their links or null if there are none. The map
+     * should not be modified.
+     */
+    @Nullable
+    Map<WaypointPair, LinkList> getLinks(int chunkX, int chunkZ) {
+        return _chunkIndex.get(getKey(chunkX, chunkZ));
+    }
+
+    /**
+     * Replace the path of a cached pair.
+     *
+     * @param pair  The pair.
+     * @param path  The new path.
+     */
+    void setPath(WaypointPair pair, long[] path) {
+
+        unindex(pair);
+        _weight -= pair.getPathSize();
+
+        pair.setPath(path);
+
+        _weight += pair.getPathSize();
+        index(pair);
+    }
+
+    /**
+     * Add a pair to the cache.
+     *
+     * @param pair  The pair to add.
+     *
+     * @return  True if added, false if already cached.
+     */
+    boolean add(WaypointPair pair) {
+
+        if (_pairs.containsKey(pair.getStartKey(), pair.getEndKey()))
+            return false;
+
+        _pairs.put(pair.getStartKey(), pair.getEndKey(), pair);
+        _weight += pair.getPathSize();
+        index(pair);
+        return true;
+    }
+
+    /**
+     * Remove a pair from the cache.
+     *
+     * @param pair  The pair to remove.
+     *
+     * @return  True if removed, otherwise false.
+     */
+    boolean remove(WaypointPair pair) {
+
+        WaypointPair removed = _pairs.remove(pair.getStartKey(), pair.getEndKey());
+        if (removed == null)
+            return false;
+
+        _pinned.remove(removed);
+        _weight -= removed.getPathSize();
+        unindex(removed);
+        return true;
+    }
+
+    /**
+     * Determine if a pair is pinned.
+     *
+     * @param pair  The pair to check.
+     */
+    boolean isPinned(WaypointPair pair) {
+        return _pinned.contains(pair);
+    }
+
+    /**
+     * Pin or unpin a cached pair.
+     *
+     * @param pair      The pair.
+     * @param isPinned  True to pin, false to unpin.
+     *
+     * @return  True if the pin state was changed, otherwise false.
+     */
+    boolean setPinned(WaypointPair pair, boolean isPinned) {
+
+        if (!isPinned)
+            return _pinned.remove(pair);
+
+        return _pairs.containsKey(pair.getStartKey(), pair.getEndKey()) && _pinned.add(pair);
+    }
+
+    /**
+     * Evict least recently used pairs that are not pinned until the cache
+     * is within the specified bounds.
+     *
+     * @param maxSize    The max number of pairs.
+     * @param maxWeight  The max total weight.
+     *
+     * @return  The number of evicted pairs.
+     */
+    int evict(int maxSize, int maxWeight) {
+
+        int evicted = 0;
+        Iterator<WaypointPair> iterator = _pairs.iterator();
+
+        while ((_pairs.size() > maxSize || _weight > maxWeight) && iterator.hasNext()) {
+
+            WaypointPair pair = iterator.next();
+            if (_pinned.contains(pair))
+                continue;
+
+            iterator.remove();
+            _weight -= pair.getPathSize();
+            unindex(pair);
+            evicted++;
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Remove all pairs, including pinned pairs.
+     */
+    void clear() {
+        _pairs.clear();
+        _pinned.clear();
+        _chunkIndex.clear();
+        _weight = 0;
+    }
+
+    /*
+     * Add each link of a pair path to the index of each chunk the link passes through.
+     */
+    private void index(WaypointPair pair) {
+
+        for (int i=0; i < pair.getPathSize() - 1; i++) {
+            long p1 = pair.getPathNode(i);
+            long p2 = pair.getPathNode(i + 1);
+
+            int minX = Math.min(PackedCoords.getChunkX(p1), PackedCoords.getChunkX(p2));
+            int maxX = Math.max(PackedCoords.getChunkX(p1), PackedCoords.getChunkX(p2));
+            int minZ = Math.min(PackedCoords.getChunkZ(p1), PackedCoords.getChunkZ(p2));
+            int maxZ = Math.max(PackedCoords.getChunkZ(p1), PackedCoords.getChunkZ(p2));
+
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+
+                    long key = getKey(x, z);
+
+                    Map<WaypointPair, LinkList> pairs = _chunkIndex.get(key);
+                    if (pairs == null) {
+                        pairs = new HashMap<>(5);
+                        _chunkIndex.put(key, pairs);
+                    }
+
+                    LinkList links = pairs.get(pair);
+                    if (links == null) {
+                        links = new LinkList();
+                        pairs.put(pair, links);
+                    }
+
+                    links.add(i);
+                }
+            }
+        }
+    }
+
+    /*
+     * Remove a pair from the chunk index.
+     */
+    private void unindex(WaypointPair pair) {
+
+        for (int i=0; i < pair.getPathSize() - 1; i++) {
+            long p1 = pair.getPathNode(i);
+            long p2 = pair.getPathNode(i + 1);
+
+            int minX = Math.min(PackedCoords.getChunkX(p1), PackedCoords.getChunkX(p2));
+            int maxX = Math.max(PackedCoords.getChunkX(p1), PackedCoords.getChunkX(p2));
+            int minZ = Math.min(PackedCoords.getChunkZ(p1), PackedCoords.getChunkZ(p2));
+            int maxZ = Math.max(PackedCoords.getChunkZ(p1), PackedCoords.getChunkZ(p2));
+
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+
+                    long key = getKey(x, z);
+
+                    Map<WaypointPair, LinkList> pairs = _chunkIndex.get(key);
+                    if (pairs != null && pairs.remove(pair) != null && pairs.isEmpty())
+                        _chunkIndex.remove(key);
+                }
+            }
+        }
+    }
+
+    /*
+     * Get the key of a chunk.
+     */
+    private static long getKey(int chunkX, int chunkZ) {
+        return ((long)chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Indexes of the links of a pair path that pass through a chunk,
+     * in path order.
+     */
+    static class LinkList {
+
+        private int[] _links = new int[8];
+        private int _size;
+
+        /**
+         * Get the number of links.
+         */
+        int size() {
+            return _size;
+        }
+
+        /**
+         * Get the index of the first path point of a link.
+         *
+         * @param index  The index of the link in the list.
+         */
+        int get(int index) {
+            return _links[index];
+        }
+
+        /*
+         * Add a link. Links are added in path order.
+         */
+        private void add(int link) {
+
+            if (_size == _links.length)
+                _links = Arrays.copyOf(_links, _size * 2);
+
+            _links[_size++] = link;
+        }
+    }
+}
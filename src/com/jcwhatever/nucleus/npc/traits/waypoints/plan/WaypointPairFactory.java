@@ -24,23 +24,72 @@
 
 package com.jcwhatever.nucleus.npc.traits.waypoints.plan;
 
-import com.jcwhatever.nucleus.collections.RetrievableSet;
+import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.hierarchy.HierarchicalPathfinder;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
 import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.nucleus.utils.coords.MutableCoords3Di;
 
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
 import javax.annotation.Nullable;
 
 /**
- * Used to generate and cache {@link WaypointPair}'s.
+ * Used to generate and cache {@link WaypointPair}'s and {@link WaypointPath}'s.
+ *
+ * <p>Paths are interned by waypoint sequence so all plans that use the same waypoints
+ * share a single immutable {@link WaypointPath} instance.</p>
+ *
+ * <p>The cache of each world is a size and weight bounded LRU. The weight of a pair
+ * is the number of path coordinates it holds. Pairs used by frequently run routes
+ * can be pinned so they are never evicted.</p>
+ *
+ * <p>Pairs whose start and end are far apart are found using a {@link HierarchicalPathfinder}
+ * instead of a flat AStar search.</p>
  */
 public class WaypointPairFactory {
 
-    private static final WaypointPairMatcher MATCHER = new WaypointPairMatcher();
-    private Map<World, RetrievableSet<WaypointPair>> _caches = new WeakHashMap<>(30);
+    private final Map<World, WaypointPairCache> _caches = new HashMap<>(10);
+    private final Map<PathKey, PathReference> _paths = new HashMap<>(20);
+    private final ReferenceQueue<WaypointPath> _pathQueue = new ReferenceQueue<>();
+    private final HierarchicalPathfinder _hierarchy = new HierarchicalPathfinder();
+    private final WaypointPairPrecomputer _precomputer = new WaypointPairPrecomputer(this);
+    private final WaypointPairRepairer _repairer = new WaypointPairRepairer(this);
+
+    private boolean _smoothPaths;
+    private int _hierarchicalDistance = 128;
+    private int _maxCacheSize = 500;
+    private int _maxCacheWeight = 50000;
+
+    private long _hits;
+    private long _misses;
+    private long _evictions;
+
+    /**
+     * Constructor.
+     */
+    public WaypointPairFactory() {
+        Bukkit.getPluginManager().registerEvents(new BukkitListener(), NpcTraitPack.getPlugin());
+    }
 
     /**
      * Create or retrieve from cache a new {@link WaypointPair}.
@@ -56,10 +105,23 @@ public class WaypointPairFactory {
         PreCon.isValid(start.getWorld().equals(end.getWorld()), "Worlds do not match.");
 
         WaypointPair pair = getCached(start, end);
-        if (pair != null)
+        if (pair != null) {
+            _hits++;
             return pair;
+        }
 
-        pair = new WaypointPair(start, end);
+        _misses++;
+
+        long[] path = null;
+
+        if (_hierarchicalDistance > 0 &&
+                Math.max(Math.abs(start.getBlockX() - end.getBlockX()),
+                        Math.abs(start.getBlockZ() - end.getBlockZ())) >= _hierarchicalDistance) {
+            path = _hierarchy.search(start, end);
+        }
+
+        // fall back to AStar if a hierarchical path is not used or not found.
+        pair = new WaypointPair(start, end, path, _smoothPaths);
 
         if (cache)
             cache(pair);
@@ -67,6 +129,390 @@ public class WaypointPairFactory {
         return pair;
     }
 
+    /**
+     * Create or retrieve a shared {@link WaypointPath} through a sequence of waypoints.
+     *
+     * @param world       The world the waypoints are in.
+     * @param waypoints   The waypoint locations.
+     * @param cachePairs  True to cache paths between pairs of waypoints for other instances to use.
+     *
+     * @throws IllegalStateException if a waypoint is not in the specified world.
+     * @throws RuntimeException if a path could not be found between a pair of waypoints.
+     */
+    public WaypointPath getPath(World world, Collection<Location> waypoints, boolean cachePairs) {
+        PreCon.notNull(world);
+        PreCon.notNull(waypoints);
+
+        long[] coords = new long[waypoints.size()];
+        int index = 0;
+
+        for (Location location : waypoints) {
+
+            if (location.getWorld() == null)
+                throw new IllegalStateException("Waypoint cannot have a null world.");
+
+            if (!world.equals(location.getWorld())) {
+                throw new IllegalStateException("Waypoint is not in the correct world. " +
+                        "Should be in: " + world.getName() + ", is in: " + location.getWorld().getName());
+            }
+
+            coords[index] = PackedCoords.pack(location);
+            index++;
+        }
+
+        expungePaths();
+
+        PathKey key = new PathKey(world, coords);
+
+        PathReference reference = _paths.get(key);
+        WaypointPath path = reference != null ? reference.get() : null;
+        if (path != null && !path.isStale())
+            return path;
+
+        List<WaypointPair> pairs = new ArrayList<>(Math.max(0, waypoints.size() - 1));
+        Location previous = null;
+
+        for (Location location : waypoints) {
+
+            if (previous != null) {
+
+                WaypointPair pair = getPair(previous, location, cachePairs);
+                if (!pair.hasPath())
+                    throw new RuntimeException("Failed to find path for waypoint pair.");
+
+                pairs.add(pair);
+            }
+            previous = location;
+        }
+
+        path = new WaypointPath(world, pairs);
+        _paths.put(key, new PathReference(key, path, _pathQueue));
+
+        return path;
+    }
+
+    /**
+     * Get an updated {@link WaypointPath} if the path of one of its waypoint pairs
+     * has been repaired or invalidated since it was built.
+     *
+     * <p>If a path can no longer be found between a pair of waypoints, a warning
+     * is logged and the stale path is kept. The stale path is not reported as stale
+     * again until another of its pairs changes.</p>
+     *
+     * @param path        The path to refresh.
+     * @param cachePairs  True to cache paths between pairs of waypoints for other instances to use.
+     *
+     * @return  The updated path or the same path if it is not stale or could not be updated.
+     */
+    public WaypointPath refresh(WaypointPath path, boolean cachePairs) {
+        PreCon.notNull(path);
+
+        if (!path.isStale())
+            return path;
+
+        World world = path.getWorld();
+        List<Location> waypoints = new ArrayList<>(path.getPairCount() + 1);
+        MutableCoords3Di coords = new MutableCoords3Di();
+
+        for (int i=0; i < path.getPairCount(); i++) {
+            WaypointPair pair = path.getPairs().get(i);
+
+            if (i == 0) {
+                pair.getStart(coords);
+                waypoints.add(new Location(world, coords.getX(), coords.getY(), coords.getZ()));
+            }
+
+            pair.getEnd(coords);
+            waypoints.add(new Location(world, coords.getX(), coords.getY(), coords.getZ()));
+        }
+
+        try {
+            return getPath(world, waypoints, cachePairs);
+        }
+        catch (RuntimeException e) {
+
+            NpcTraitPack.getPlugin().getMessenger().warning(
+                    "Failed to update waypoint path in world '" + world.getName() +
+                            "' after a block change, the previous path is still used: " + e.getMessage());
+
+            path.acceptPairVersions();
+            return path;
+        }
+    }
+
+    /**
+     * Queue the paths between each pair of a sequence of waypoints to be planned
+     * in the background.
+     *
+     * <p>Pairs queued in the same tick are de-duplicated and planned together on
+     * worker threads starting in the next tick. Planned pairs are added to the cache.
+     * Pairs requested before they are planned are found normally.</p>
+     *
+     * <p>Planned pairs are found with a grid search instead of AStar and are marked
+     * as precomputed. See {@link WaypointPair#isPrecomputed}.</p>
+     *
+     * @param world      The world the waypoints are in.
+     * @param waypoints  The waypoint locations.
+     *
+     * @throws IllegalStateException if a waypoint is not in the specified world.
+     */
+    public void precompute(World world, Collection<Location> waypoints) {
+        PreCon.notNull(world);
+        PreCon.notNull(waypoints);
+
+        _precomputer.queue(world, new ArrayList<>(waypoints));
+    }
+
+    /**
+     * Determine if queued waypoint pairs are being planned in the background.
+     */
+    public boolean isPrecomputing() {
+        return _precomputer.isRunning() || _precomputer.getPendingSize() > 0;
+    }
+
+    /**
+     * Pin a {@link WaypointPair} so it is never evicted from the cache.
+     *
+     * <p>The pair is added to the cache if it is not already cached.</p>
+     *
+     * @param pair  The pair to pin.
+     *
+     * @return  True if the pair was pinned, false if it was already pinned.
+     */
+    public boolean pin(WaypointPair pair) {
+        PreCon.notNull(pair);
+
+        WaypointPairCache cache = getCache(pair.getWorld());
+        cache.add(pair);
+
+        if (!cache.setPinned(pair, true))
+            return false;
+
+        _evictions += cache.evict(_maxCacheSize, _maxCacheWeight);
+        return true;
+    }
+
+    /**
+     * Unpin a {@link WaypointPair} so it can be evicted from the cache.
+     *
+     * @param pair  The pair to unpin.
+     *
+     * @return  True if the pair was unpinned, false if it was not pinned.
+     */
+    public boolean unpin(WaypointPair pair) {
+        PreCon.notNull(pair);
+
+        WaypointPairCache cache = _caches.get(pair.getWorld());
+        if (cache == null || !cache.setPinned(pair, false))
+            return false;
+
+        _evictions += cache.evict(_maxCacheSize, _maxCacheWeight);
+        return true;
+    }
+
+    /**
+     * Determine if a {@link WaypointPair} is pinned.
+     *
+     * @param pair  The pair to check.
+     */
+    public boolean isPinned(WaypointPair pair) {
+        PreCon.notNull(pair);
+
+        WaypointPairCache cache = _caches.get(pair.getWorld());
+        return cache != null && cache.isPinned(pair);
+    }
+
+    /**
+     * Determine if generated paths are smoothed by removing path points that can
+     * be skipped by walking in a straight line.
+     *
+     * <p>Default is false.</p>
+     */
+    public boolean isSmoothPaths() {
+        return _smoothPaths;
+    }
+
+    /**
+     * Set generated paths to be smoothed by removing path points that can be
+     * skipped by walking in a straight line.
+     *
+     * <p>Smoothed paths have fewer path points for timers to step through and
+     * navigators to target. Changing the value clears all cached pairs and paths.</p>
+     *
+     * @param isSmooth  True to smooth paths, otherwise false.
+     */
+    public void setSmoothPaths(boolean isSmooth) {
+        if (_smoothPaths == isSmooth)
+            return;
+
+        _smoothPaths = isSmooth;
+
+        for (WaypointPairCache cache : _caches.values())
+            cache.clear();
+
+        _caches.clear();
+        _paths.clear();
+    }
+
+    /**
+     * Get the hierarchical path finder used for pairs that are far apart.
+     */
+    public HierarchicalPathfinder getHierarchicalPathfinder() {
+        return _hierarchy;
+    }
+
+    /**
+     * Get the horizontal block distance between the start and end of a pair at which
+     * the hierarchical path finder is used instead of a flat AStar search.
+     *
+     * <p>Default is 128. A value of 0 disables hierarchical path finding.</p>
+     */
+    public int getHierarchicalDistance() {
+        return _hierarchicalDistance;
+    }
+
+    /**
+     * Set the horizontal block distance between the start and end of a pair at which
+     * the hierarchical path finder is used instead of a flat AStar search.
+     *
+     * @param distance  The distance. A value of 0 disables hierarchical path finding.
+     */
+    public void setHierarchicalDistance(int distance) {
+        PreCon.positiveNumber(distance, "distance");
+
+        _hierarchicalDistance = distance;
+    }
+
+    /**
+     * Get the max number of pairs cached per world.
+     *
+     * <p>Default is 500.</p>
+     */
+    public int getMaxCacheSize() {
+        return _maxCacheSize;
+    }
+
+    /**
+     * Set the max number of pairs cached per world.
+     *
+     * @param size  The max size. Must be greater than 0.
+     */
+    public void setMaxCacheSize(int size) {
+        PreCon.greaterThanZero(size, "size");
+
+        _maxCacheSize = size;
+        evictAll();
+    }
+
+    /**
+     * Get the max total number of path coordinates held by cached pairs per world.
+     *
+     * <p>Default is 50000.</p>
+     */
+    public int getMaxCacheWeight() {
+        return _maxCacheWeight;
+    }
+
+    /**
+     * Set the max total number of path coordinates held by cached pairs per world.
+     *
+     * @param weight  The max weight. Must be greater than 0.
+     */
+    public void setMaxCacheWeight(int weight) {
+        PreCon.greaterThanZero(weight, "weight");
+
+        _maxCacheWeight = weight;
+        evictAll();
+    }
+
+    /**
+     * Get the number of pairs cached in all worlds.
+     */
+    public int getCacheSize() {
+        int size = 0;
+
+        for (WaypointPairCache cache : _caches.values())
+            size += cache.size();
+
+        return size;
+    }
+
+    /**
+     * Get the total number of path coordinates held by cached pairs in all worlds.
+     */
+    public int getCacheWeight() {
+        int weight = 0;
+
+        for (WaypointPairCache cache : _caches.values())
+            weight += cache.getWeight();
+
+        return weight;
+    }
+
+    /**
+     * Get the number of times a requested pair was found in the cache.
+     */
+    public long getCacheHits() {
+        return _hits;
+    }
+
+    /**
+     * Get the number of times a requested pair was not found in the cache.
+     */
+    public long getCacheMisses() {
+        return _misses;
+    }
+
+    /**
+     * Get the number of pairs evicted from the cache.
+     */
+    public long getCacheEvictions() {
+        return _evictions;
+    }
+
+    /**
+     * Get the number of cached pair paths repaired after block changes.
+     */
+    public long getPathRepairs() {
+        return _repairer.getRepairs();
+    }
+
+    /**
+     * Get the number of cached pairs removed because their path could not
+     * be repaired after a block change.
+     */
+    public long getPathInvalidations() {
+        return _repairer.getInvalidations();
+    }
+
+    /**
+     * Reset the cache hit, miss and eviction counters.
+     */
+    public void resetStats() {
+        _hits = 0;
+        _misses = 0;
+        _evictions = 0;
+    }
+
+    /**
+     * Remove all cached pairs in a world, including pinned pairs.
+     *
+     * @param world  The world.
+     */
+    public void clear(World world) {
+        PreCon.notNull(world);
+
+        WaypointPairCache cache = _caches.remove(world);
+        if (cache != null)
+            cache.clear();
+
+        Iterator<PathKey> iterator = _paths.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().world.equals(world))
+                iterator.remove();
+        }
+    }
+
     /**
      * Retrieve a {@link WaypointPair} from the cache.
      *
@@ -78,23 +524,149 @@ public class WaypointPairFactory {
     @Nullable
     private WaypointPair getCached(Location start, Location end) {
 
-        RetrievableSet<WaypointPair> cached = _caches.get(start.getWorld());
-        if (cached == null)
+        WaypointPairCache cache = _caches.get(start.getWorld());
+        if (cache == null)
             return null;
 
-        MATCHER.setCoords(start, end);
+        return cache.get(PackedCoords.pack(start), PackedCoords.pack(end));
+    }
+
+    /*
+     * Determine if a pair is cached.
+     */
+    boolean isCached(Location start, Location end) {
+        return getCached(start, end) != null;
+    }
+
+    /*
+     * Cache a pair planned by the precomputer.
+     */
+    void addPrecomputed(Location start, Location end, long[] path) {
+
+        // the world may have unloaded while the pair was planned.
+        if (Bukkit.getWorld(start.getWorld().getUID()) == null || isCached(start, end))
+            return;
+
+        WaypointPair pair = new WaypointPair(start, end, path, false);
+        pair.setPrecomputed();
 
-        return cached.retrieve(MATCHER);
+        cache(pair);
     }
 
     private void cache(WaypointPair pair) {
 
-        RetrievableSet<WaypointPair> cached = _caches.get(pair.getWorld());
-        if (cached == null) {
-            cached = new RetrievableSet<>(20);
-            _caches.put(pair.getWorld(), cached);
+        WaypointPairCache cache = getCache(pair.getWorld());
+
+        if (cache.add(pair))
+            _evictions += cache.evict(_maxCacheSize, _maxCacheWeight);
+    }
+
+    /*
+     * Get the cache of a world or null if the world does not have a cache.
+     */
+    @Nullable
+    WaypointPairCache findCache(World world) {
+        return _caches.get(world);
+    }
+
+    private WaypointPairCache getCache(World world) {
+
+        WaypointPairCache cache = _caches.get(world);
+        if (cache == null) {
+            cache = new WaypointPairCache();
+            _caches.put(world, cache);
+        }
+
+        return cache;
+    }
+
+    private void evictAll() {
+        for (WaypointPairCache cache : _caches.values()) {
+            _evictions += cache.evict(_maxCacheSize, _maxCacheWeight);
+        }
+    }
+
+    /*
+     * Remove interned paths that have been garbage collected.
+     */
+    private void expungePaths() {
+
+        Reference<? extends WaypointPath> reference;
+
+        while ((reference = _pathQueue.poll()) != null) {
+            PathKey key = ((PathReference) reference).key;
+
+            if (_paths.get(key) == reference)
+                _paths.remove(key);
+        }
+    }
+
+    /*
+     * Waypoint sequence key for interned paths.
+     */
+    private static class PathKey {
+
+        final World world;
+        final long[] coords;
+        final int hash;
+
+        PathKey(World world, long[] coords) {
+            this.world = world;
+            this.coords = coords;
+            this.hash = world.hashCode() * 31 + Arrays.hashCode(coords);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this ||
+                    obj instanceof PathKey &&
+                            ((PathKey) obj).world.equals(world) &&
+                            Arrays.equals(((PathKey) obj).coords, coords);
+        }
+    }
+
+    /*
+     * Weak reference to an interned path.
+     */
+    private static class PathReference extends WeakReference<WaypointPath> {
+
+        final PathKey key;
+
+        PathReference(PathKey key, WaypointPath path, ReferenceQueue<WaypointPath> queue) {
+            super(path, queue);
+            this.key = key;
         }
+    }
 
-        cached.add(pair);
+    private class BukkitListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        private void onWorldUnload(WorldUnloadEvent event) {
+            clear(event.getWorld());
+            _hierarchy.clear(event.getWorld());
+            _repairer.clear(event.getWorld());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        private void onBlockPlace(BlockPlaceEvent event) {
+            onBlockChange(event.getBlock());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        private void onBlockBreak(BlockBreakEvent event) {
+            onBlockChange(event.getBlock());
+        }
+
+        private void onBlockChange(Block block) {
+            _hierarchy.invalidate(block.getWorld(), block.getX(), block.getZ());
+
+            if (_caches.containsKey(block.getWorld()))
+                _repairer.onBlockChange(block.getWorld(), block.getX(), block.getY(), block.getZ());
+        }
     }
 }
@@ -24,6 +24,8 @@
 
 package com.jcwhatever.nucleus.npc.traits.waypoints.plan;
 
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedPairMap;
 import com.jcwhatever.nucleus.utils.PreCon;
 import com.jcwhatever.nucleus.utils.coords.Coords3Di;
 import com.jcwhatever.nucleus.utils.coords.MutableCoords3Di;
@@ -72,8 +74,10 @@ public class WaypointPairMatcher {
 
     @Override
     public int hashCode() {
-        return _start.getX() ^ _start.getY() ^ _start.getZ() ^
-                _end.getX() ^ _end.getY() ^ _end.getZ();
+        // must match the hash code of WaypointPair
+        return PackedPairMap.hash(
+                PackedCoords.pack(_start.getX(), _start.getY(), _start.getZ()),
+                PackedCoords.pack(_end.getX(), _end.getY(), _end.getZ()));
     }
 
     @Override
@@ -0,0 +1,523 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan;
+
+import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.GridPathSearch;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PathSmoother;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.SnapshotBlockView;
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.nucleus.utils.coords.LocationUtils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.annotation.Nullable;
+
+/**
+ * Plans the paths of queued waypoint pairs in batches on worker threads.
+ *
+ * <p>Waypoint pairs queued while a batch is not running are collected and
+ * de-duplicated, then planned together starting in the next tick. Chunk snapshots of
+ * the corridor around each pair are taken on the main thread and the paths are found
+ * on worker threads. Results are added to the {@link WaypointPairFactory} cache on
+ * the main thread.</p>
+ *
+ * <p>Snapshots are spread over ticks with a per tick budget. Chunks that are not
+ * loaded have a smaller budget and chunks that have not been generated are not
+ * generated. They are treated as solid by the search. A pair is submitted to the
+ * workers as soon as its corridor is snapshotted.</p>
+ *
+ * <p>Pairs are searched with {@link GridPathSearch}, which can run on the chunk
+ * snapshots, instead of the AStar search used for pairs found on first use. The
+ * grid search requires a solid floor and does not path through water or lava, so
+ * the path of a precomputed pair may differ from the path AStar would find.
+ * Precomputed pairs are marked, see {@link WaypointPair#isPrecomputed}.</p>
+ *
+ * <p>Pairs whose corridor is too large are not planned and are left to be found
+ * when first used.</p>
+ */
+class WaypointPairPrecomputer {
+
+    // chunks around the start and end chunks included in a pairs search corridor
+    private static final int CORRIDOR_MARGIN = 2;
+
+    // max chunks in a pairs search corridor
+    private static final int MAX_CORRIDOR_CHUNKS = 400;
+
+    // max search nodes per corridor chunk
+    private static final int NODES_PER_CHUNK = 256;
+
+    // max chunk snapshots taken per tick
+    private static final int MAX_SNAPSHOTS_PER_TICK = 32;
+
+    // max chunks loaded from disk for snapshots per tick
+    private static final int MAX_LOADS_PER_TICK = 4;
+
+    private final WaypointPairFactory _factory;
+    private final Map<PairKey, Location[]> _pending = new LinkedHashMap<>(50);
+
+    // pairs of the running batch waiting for corridor snapshots
+    private final List<BatchPair> _batch = new ArrayList<>(50);
+
+    // chunk snapshots of the running batch shared by pairs in the same world.
+    // A null value is a chunk that has not been generated.
+    private final Map<World, Map<Long, ChunkSnapshot>> _snapshots = new HashMap<>(5);
+
+    private boolean _isScheduled;
+    private boolean _isRunning;
+    private boolean _isSnapshotting;
+    private int _batchIndex;
+    private ExecutorService _executor;
+    private BukkitTask _snapshotTask;
+
+    // batch progress
+    private int _total;
+    private int _completed;
+    private int _failed;
+    private int _skipped;
+    private int _nextReport;
+    private long _startTime;
+    private int _threads;
+
+    /**
+     * Constructor.
+     *
+     * @param factory  The factory to add planned pairs to.
+     */
+    WaypointPairPrecomputer(WaypointPairFactory factory) {
+        PreCon.notNull(factory);
+
+        _factory = factory;
+    }
+
+    /**
+     * Determine if a batch is running.
+     */
+    boolean isRunning() {
+        return _isRunning;
+    }
+
+    /**
+     * Get the number of pairs waiting for the next batch.
+     */
+    int getPendingSize() {
+        return _pending.size();
+    }
+
+    /**
+     * Queue the pairs of a sequence of waypoints to be planned.
+     *
+     * @param world      The world the waypoints are in.
+     * @param waypoints  The waypoints.
+     */
+    void queue(World world, List<Location> waypoints) {
+        PreCon.notNull(world);
+        PreCon.notNull(waypoints);
+
+        for (int i=1; i < waypoints.size(); i++) {
+            Location start = waypoints.get(i - 1);
+            Location end = waypoints.get(i);
+
+            if (!world.equals(start.getWorld()) || !world.equals(end.getWorld()))
+                throw new IllegalStateException("Waypoint is not in the specified world.");
+
+            PairKey key = new PairKey(world, PackedCoords.pack(start), PackedCoords.pack(end));
+
+            if (!_pending.containsKey(key))
+                _pending.put(key, new Location[] { LocationUtils.copy(start), LocationUtils.copy(end) });
+        }
+
+        schedule();
+    }
+
+    /*
+     * Schedule the next batch to run in the next tick.
+     */
+    private void schedule() {
+
+        if (_isScheduled || _isRunning || _pending.isEmpty())
+            return;
+
+        _isScheduled = true;
+
+        Bukkit.getScheduler().runTask(NpcTraitPack.getPlugin(), new Runnable() {
+            @Override
+            public void run() {
+                _isScheduled = false;
+                runBatch();
+            }
+        });
+    }
+
+    /*
+     * Start a batch with the pending pairs.
+     */
+    private void runBatch() {
+
+        if (_pending.isEmpty())
+            return;
+
+        _isRunning = true;
+        _startTime = System.currentTimeMillis();
+        _total = _pending.size();
+        _completed = 0;
+        _failed = 0;
+        _skipped = 0;
+        _nextReport = 25;
+        _threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+        Iterator<Map.Entry<PairKey, Location[]>> iterator = _pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<PairKey, Location[]> entry = iterator.next();
+            iterator.remove();
+
+            Location start = entry.getValue()[0];
+            Location end = entry.getValue()[1];
+
+            if (_factory.isCached(start, end)) {
+                _skipped++;
+                continue;
+            }
+
+            BatchPair pair = new BatchPair(entry.getKey().world, start, end);
+
+            if (pair.corridorChunks > MAX_CORRIDOR_CHUNKS) {
+                _skipped++;
+                continue;
+            }
+
+            _batch.add(pair);
+        }
+
+        if (_batch.isEmpty()) {
+            finishBatch();
+            return;
+        }
+
+        NpcTraitPack.getPlugin().getMessenger().info(
+                "Precomputing " + _batch.size() + " waypoint pairs using " + _threads + " threads.");
+
+        _executor = Executors.newFixedThreadPool(_threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "NpcTraitPack-PathWorker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        _isSnapshotting = true;
+        _batchIndex = 0;
+
+        _snapshotTask = Bukkit.getScheduler().runTaskTimer(NpcTraitPack.getPlugin(), new Runnable() {
+            @Override
+            public void run() {
+                snapshotTick();
+            }
+        }, 0, 1);
+    }
+
+    /*
+     * Take the corridor snapshots of batch pairs within the per tick budget and
+     * submit pairs whose corridor is complete to the worker threads.
+     */
+    private void snapshotTick() {
+
+        int snapshots = 0;
+        int loads = 0;
+
+        while (_batchIndex < _batch.size()) {
+
+            BatchPair pair = _batch.get(_batchIndex);
+
+            Map<Long, ChunkSnapshot> worldSnapshots = _snapshots.get(pair.world);
+            if (worldSnapshots == null) {
+                worldSnapshots = new HashMap<>(pair.corridorChunks);
+                _snapshots.put(pair.world, worldSnapshots);
+            }
+
+            boolean isWorldLoaded = Bukkit.getWorld(pair.world.getUID()) != null;
+
+            while (pair.nextChunk < pair.corridorChunks) {
+
+                int chunkX = pair.minChunkX + pair.nextChunk / pair.depth;
+                int chunkZ = pair.minChunkZ + pair.nextChunk % pair.depth;
+                long chunkKey = SnapshotBlockView.getKey(chunkX, chunkZ);
+
+                if (!worldSnapshots.containsKey(chunkKey)) {
+
+                    if (snapshots >= MAX_SNAPSHOTS_PER_TICK)
+                        return;
+
+                    ChunkSnapshot snapshot = null;
+
+                    if (isWorldLoaded) {
+
+                        boolean isLoaded = pair.world.isChunkLoaded(chunkX, chunkZ);
+                        if (!isLoaded) {
+                            if (loads >= MAX_LOADS_PER_TICK)
+                                return;
+
+                            loads++;
+
+                            // do not generate chunks
+                            isLoaded = pair.world.loadChunk(chunkX, chunkZ, false);
+                        }
+
+                        if (isLoaded) {
+                            snapshot = pair.world.getChunkAt(chunkX, chunkZ).getChunkSnapshot();
+                            snapshots++;
+                        }
+                    }
+
+                    worldSnapshots.put(chunkKey, snapshot);
+                }
+
+                ChunkSnapshot snapshot = worldSnapshots.get(chunkKey);
+                if (snapshot != null)
+                    pair.corridor.put(chunkKey, snapshot);
+
+                pair.nextChunk++;
+            }
+
+            // the corridor map is not modified after the job is submitted.
+            _executor.execute(new SearchJob(pair.start, pair.end,
+                    new SnapshotBlockView(pair.corridor, pair.world.getMaxHeight()),
+                    pair.minChunkX << 4, pair.minChunkZ << 4,
+                    ((pair.minChunkX + pair.width) << 4) - 1, ((pair.minChunkZ + pair.depth) << 4) - 1,
+                    pair.corridorChunks * NODES_PER_CHUNK, _factory.isSmoothPaths()));
+
+            _batchIndex++;
+        }
+
+        // all pairs submitted
+        _snapshotTask.cancel();
+        _snapshotTask = null;
+        _executor.shutdown();
+        _executor = null;
+        _batch.clear();
+        _snapshots.clear();
+        _isSnapshotting = false;
+
+        if (_completed == _total - _skipped)
+            finishBatch();
+    }
+
+    /*
+     * Add the result of a pair search to the factory. Invoked on the main thread.
+     */
+    private void onResult(Location start, Location end, @Nullable long[] path, boolean isSmooth,
+                          @Nullable RuntimeException error) {
+
+        _completed++;
+
+        if (error != null) {
+            NpcTraitPack.getPlugin().getMessenger().warning(
+                    "Error while precomputing waypoint pair in world '" + start.getWorld().getName() + "': " +
+                            error.getMessage());
+        }
+
+        if (path == null)
+            _failed++;
+        else if (isSmooth == _factory.isSmoothPaths()) // smoothing may have changed while planning
+            _factory.addPrecomputed(start, end, path);
+
+        int searched = _total - _skipped;
+        int percent = searched == 0 ? 100 : (_completed * 100) / searched;
+
+        if (_completed == searched) {
+            // pairs may still be waiting for snapshots
+            if (!_isSnapshotting)
+                finishBatch();
+        }
+        else if (percent >= _nextReport) {
+            NpcTraitPack.getPlugin().getMessenger().info(
+                    "Precomputing waypoint pairs: " + percent + "% (" + _completed + '/' + searched + ')');
+
+            _nextReport = (percent / 25 + 1) * 25;
+        }
+    }
+
+    /*
+     * Report the batch results and start the next batch if pairs were queued.
+     */
+    private void finishBatch() {
+
+        _isRunning = false;
+
+        long elapsed = System.currentTimeMillis() - _startTime;
+
+        NpcTraitPack.getPlugin().getMessenger().info(
+                "Precomputed " + (_completed - _failed) + " waypoint pairs in " + elapsed + "ms. " +
+                        _failed + " not found, " + _skipped + " skipped.");
+
+        schedule();
+    }
+
+    /*
+     * Searches for the path of a pair on a worker thread.
+     */
+    private class SearchJob implements Runnable {
+
+        final Location start;
+        final Location end;
+        final SnapshotBlockView view;
+        final int minX;
+        final int minZ;
+        final int maxX;
+        final int maxZ;
+        final int maxNodes;
+        final boolean isSmooth;
+
+        SearchJob(Location start, Location end, SnapshotBlockView view,
+                  int minX, int minZ, int maxX, int maxZ, int maxNodes, boolean isSmooth) {
+            this.start = start;
+            this.end = end;
+            this.view = view;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+            this.maxNodes = maxNodes;
+            this.isSmooth = isSmooth;
+        }
+
+        @Override
+        public void run() {
+
+            long[] path = null;
+            RuntimeException error = null;
+
+            try {
+                GridPathSearch search = new GridPathSearch(view)
+                        .setBounds(minX, minZ, maxX, maxZ)
+                        .setMaxNodes(maxNodes);
+
+                path = search.search(PackedCoords.pack(start), PackedCoords.pack(end));
+
+                if (path != null && isSmooth)
+                    path = PathSmoother.smooth(view, path);
+            }
+            catch (RuntimeException e) {
+                // reported on the main thread
+                error = e;
+            }
+
+            final long[] result = path;
+            final RuntimeException resultError = error;
+
+            Plugin plugin = NpcTraitPack.getPlugin();
+            if (plugin == null || !plugin.isEnabled())
+                return;
+
+            Bukkit.getScheduler().runTask(plugin, new Runnable() {
+                @Override
+                public void run() {
+                    onResult(start, end, result, isSmooth, resultError);
+                }
+            });
+        }
+    }
+
+    /*
+     * A pair of the running batch and its search corridor.
+     */
+    private static class BatchPair {
+
+        final World world;
+        final Location start;
+        final Location end;
+        final int minChunkX;
+        final int minChunkZ;
+        final int width;
+        final int depth;
+        final int corridorChunks;
+
+        // snapshots of the corridor chunks, only chunks that exist are included.
+        final Map<Long, ChunkSnapshot> corridor;
+
+        // index of the next corridor chunk to snapshot
+        int nextChunk;
+
+        BatchPair(World world, Location start, Location end) {
+            this.world = world;
+            this.start = start;
+            this.end = end;
+
+            minChunkX = (Math.min(start.getBlockX(), end.getBlockX()) >> 4) - CORRIDOR_MARGIN;
+            minChunkZ = (Math.min(start.getBlockZ(), end.getBlockZ()) >> 4) - CORRIDOR_MARGIN;
+            width = (Math.max(start.getBlockX(), end.getBlockX()) >> 4) + CORRIDOR_MARGIN - minChunkX + 1;
+            depth = (Math.max(start.getBlockZ(), end.getBlockZ()) >> 4) + CORRIDOR_MARGIN - minChunkZ + 1;
+            corridorChunks = width * depth;
+            corridor = new HashMap<>(Math.min(corridorChunks, MAX_CORRIDOR_CHUNKS));
+        }
+    }
+
+    /*
+     * Key used to de-duplicate queued pairs.
+     */
+    private static class PairKey {
+
+        final World world;
+        final long start;
+        final long end;
+
+        PairKey(World world, long start, long end) {
+            this.world = world;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int hashCode() {
+            return world.hashCode() ^ (int)(start ^ (start >>> 32)) ^ (31 * (int)(end ^ (end >>> 32)));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PairKey))
+                return false;
+
+            PairKey other = (PairKey)obj;
+
+            return other.start == start && other.end == end && other.world.equals(world);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan;
+
+import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.WaypointPairCache.LinkList;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PathSmoother;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.WorldBlockView;
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Repairs the paths of cached {@link WaypointPair}'s after block changes.
+ *
+ * <p>Changed blocks are collected per chunk and checked together in the next tick,
+ * after the changes are applied. The chunk index of the {@link WaypointPairCache} is
+ * used to find the path links in each changed chunk so only those links are checked.</p>
+ *
+ * <p>A link is only considered blocked if a changed block is now solid where the
+ * entity walks or a floor block under the link was removed. The blocks of the
+ * path that did not change are not judged again, so paths that AStar found over
+ * water or other non-solid floors stay valid.</p>
+ *
+ * <p>Only the blocked part of a path, plus a few path points on each side, is searched
+ * again with AStar and patched into the pair. A pair that cannot be repaired locally
+ * is removed from the cache so its path is found again when next used.</p>
+ *
+ * <p>{@link WaypointPath}'s built from a repaired pair become stale and are rebuilt
+ * by {@link WaypointPairFactory#refresh}.</p>
+ */
+class WaypointPairRepairer {
+
+    // path points on each side of the blocked links included in the repair search
+    private static final int REPAIR_MARGIN = 4;
+
+    private static final Location START_LOCATION = new Location(null, 0, 0, 0);
+    private static final Location END_LOCATION = new Location(null, 0, 0, 0);
+
+    private final WaypointPairFactory _factory;
+
+    // changed blocks waiting to be checked, grouped by world and chunk
+    private final Map<World, Map<Long, Set<Long>>> _changes = new HashMap<>(5);
+
+    // pairs to repair mapped to the first and last blocked link
+    private final Map<WaypointPair, int[]> _blocked = new HashMap<>(10);
+
+    private boolean _isScheduled;
+    private long _repairs;
+    private long _invalidations;
+
+    /**
+     * Constructor.
+     *
+     * @param factory  The owning factory.
+     */
+    WaypointPairRepairer(WaypointPairFactory factory) {
+        PreCon.notNull(factory);
+
+        _factory = factory;
+    }
+
+    /**
+     * Get the number of pair paths repaired.
+     */
+    long getRepairs() {
+        return _repairs;
+    }
+
+    /**
+     * Get the number of pairs removed from the cache because their
+     * path could not be repaired.
+     */
+    long getInvalidations() {
+        return _invalidations;
+    }
+
+    /**
+     * Invoked when a block is about to change or has changed.
+     *
+     * <p>The block is checked in the next tick together with all other
+     * blocks changed in the same chunk.</p>
+     *
+     * @param world  The world the block is in.
+     * @param x      The block X coordinate.
+     * @param y      The block Y coordinate.
+     * @param z      The block Z coordinate.
+     */
+    void onBlockChange(World world, int x, int y, int z) {
+
+        Map<Long, Set<Long>> chunks = _changes.get(world);
+        if (chunks == null) {
+            chunks = new HashMap<>(10);
+            _changes.put(world, chunks);
+        }
+
+        long chunkKey = ((long)(x >> 4) << 32) | ((z >> 4) & 0xFFFFFFFFL);
+
+        Set<Long> blocks = chunks.get(chunkKey);
+        if (blocks == null) {
+            blocks = new HashSet<>(5);
+            chunks.put(chunkKey, blocks);
+        }
+
+        blocks.add(PackedCoords.pack(x, y, z));
+
+        schedule();
+    }
+
+    /**
+     * Remove pending changes of blocks in a world.
+     *
+     * @param world  The world.
+     */
+    void clear(World world) {
+        _changes.remove(world);
+    }
+
+    /*
+     * Schedule changed blocks to be checked in the next tick.
+     */
+    private void schedule() {
+
+        if (_isScheduled)
+            return;
+
+        _isScheduled = true;
+
+        Bukkit.getScheduler().runTask(NpcTraitPack.getPlugin(), new Runnable() {
+            @Override
+            public void run() {
+                _isScheduled = false;
+                repairChanged();
+            }
+        });
+    }
+
+    /*
+     * Find and repair the pair paths blocked by the changed blocks.
+     */
+    private void repairChanged() {
+
+        for (Map.Entry<World, Map<Long, Set<Long>>> worldEntry : _changes.entrySet()) {
+
+            World world = worldEntry.getKey();
+
+            WaypointPairCache cache = _factory.findCache(world);
+            if (cache == null)
+                continue;
+
+            for (Map.Entry<Long, Set<Long>> chunkEntry : worldEntry.getValue().entrySet()) {
+
+                long chunkKey = chunkEntry.getKey();
+
+                Map<WaypointPair, LinkList> pairs = cache.getLinks((int)(chunkKey >> 32), (int)chunkKey);
+                if (pairs == null)
+                    continue;
+
+                // look up the changed block types once per chunk
+                Set<Long> changed = chunkEntry.getValue();
+                long[] blocks = new long[changed.size()];
+                Material[] types = new Material[blocks.length];
+                int index = 0;
+
+                for (long block : changed) {
+                    blocks[index] = block;
+                    types[index] = world.getBlockAt(PackedCoords.getX(block),
+                            PackedCoords.getY(block), PackedCoords.getZ(block)).getType();
+                    index++;
+                }
+
+                for (Map.Entry<WaypointPair, LinkList> pairEntry : pairs.entrySet()) {
+                    findBlocked(pairEntry.getKey(), pairEntry.getValue(), blocks, types);
+                }
+            }
+
+            // repair after the chunk index is no longer iterated, repairs re-index the pair.
+            for (Map.Entry<WaypointPair, int[]> entry : _blocked.entrySet()) {
+
+                WaypointPair pair = entry.getKey();
+                if (!cache.contains(pair) || !pair.hasPath())
+                    continue;
+
+                repair(cache, pair, entry.getValue()[0], entry.getValue()[1]);
+            }
+
+            _blocked.clear();
+        }
+
+        _changes.clear();
+    }
+
+    /*
+     * Add the links of a pair that are blocked by changed blocks to the
+     * blocked link range of the pair.
+     */
+    private void findBlocked(WaypointPair pair, LinkList links, long[] blocks, Material[] types) {
+
+        for (int i=0; i < links.size(); i++) {
+
+            int link = links.get(i);
+            long p1 = pair.getPathNode(link);
+            long p2 = pair.getPathNode(link + 1);
+
+            for (int j=0; j < blocks.length; j++) {
+
+                if (!isBlocked(p1, p2, blocks[j], types[j]))
+                    continue;
+
+                int[] range = _blocked.get(pair);
+                if (range == null) {
+                    _blocked.put(pair, new int[] { link, link });
+                }
+                else {
+                    range[0] = Math.min(range[0], link);
+                    range[1] = Math.max(range[1], link);
+                }
+                break;
+            }
+        }
+    }
+
+    /*
+     * Repair the blocked links of a pair path within a range of links.
+     */
+    private void repair(WaypointPairCache cache, WaypointPair pair, int firstLink, int lastLink) {
+
+        int startIndex = Math.max(0, firstLink - REPAIR_MARGIN);
+        int endIndex = Math.min(pair.getPathSize() - 1, lastLink + 1 + REPAIR_MARGIN);
+
+        // search again with the same AStar search that finds the path of a pair.
+        long[] section = WaypointPair.search(
+                PackedCoords.toLocation(pair.getPathNode(startIndex), pair.getWorld(), START_LOCATION),
+                PackedCoords.toLocation(pair.getPathNode(endIndex), pair.getWorld(), END_LOCATION));
+
+        if (section == null || section.length == 0) {
+            // could not repair locally, remove so the path is found again when next used.
+            cache.remove(pair);
+            pair.invalidate();
+            _invalidations++;
+            return;
+        }
+
+        if (_factory.isSmoothPaths())
+            section = PathSmoother.smooth(new WorldBlockView(pair.getWorld()), section);
+
+        long[] path = new long[startIndex + section.length + (pair.getPathSize() - 1 - endIndex)];
+
+        int index = 0;
+
+        for (int i=0; i < startIndex; i++)
+            path[index++] = pair.getPathNode(i);
+
+        for (long node : section)
+            path[index++] = node;
+
+        for (int i = endIndex + 1; i < pair.getPathSize(); i++)
+            path[index++] = pair.getPathNode(i);
+
+        cache.setPath(pair, path);
+        _repairs++;
+    }
+
+    /*
+     * Determine if a changed block blocks a path link.
+     */
+    private static boolean isBlocked(long p1, long p2, long block, Material type) {
+
+        int x = PackedCoords.getX(block);
+        int y = PackedCoords.getY(block);
+        int z = PackedCoords.getZ(block);
+
+        int x1 = PackedCoords.getX(p1);
+        int z1 = PackedCoords.getZ(p1);
+        int x2 = PackedCoords.getX(p2);
+        int z2 = PackedCoords.getZ(p2);
+
+        // smoothed link, walked in a straight line at a single height
+        if (Math.abs(x1 - x2) > 1 || Math.abs(z1 - z2) > 1) {
+
+            return x >= Math.min(x1, x2) && x <= Math.max(x1, x2) &&
+                    z >= Math.min(z1, z2) && z <= Math.max(z1, z2) &&
+                    isBlocking(type, y - PackedCoords.getY(p1));
+        }
+
+        return (x == x1 && z == z1 && isBlocking(type, y - PackedCoords.getY(p1))) ||
+                (x == x2 && z == z2 && isBlocking(type, y - PackedCoords.getY(p2)));
+    }
+
+    /*
+     * Determine if a changed block blocks a path point. The block is blocking if it is
+     * now solid where the entity stands or if it is the floor and was removed.
+     */
+    private static boolean isBlocking(Material type, int offsetY) {
+
+        if (offsetY == 0 || offsetY == 1)
+            return type.isSolid();
+
+        return offsetY == -1 && type == Material.AIR;
+    }
+}
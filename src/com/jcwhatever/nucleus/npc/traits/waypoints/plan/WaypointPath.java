@@ -0,0 +1,293 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan;
+
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoordsIndex;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PathSegment;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PathSegmentStore;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.SegmentedPath;
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable planned path through a sequence of waypoints.
+ *
+ * <p>The path does not copy the coordinates of its waypoint pairs. It is a sequence of
+ * references to the interned {@link PathSegment}'s of each pair (see {@link SegmentedPath}),
+ * so paths that share waypoint pairs or overlapping geometry also share memory.
+ * Instances are shared by all {@link WaypointPlan}'s that use the same waypoint sequence.
+ * Use {@link WaypointPairFactory#getPath} to get an instance.</p>
+ */
+public final class WaypointPath {
+
+    private final World _world;
+    private final List<WaypointPair> _pairs;
+    private final SegmentedPath _path;
+
+    // path index of the first coordinate of each pair
+    private final int[] _pairStartIndexes;
+
+    // version of each pair when the path was built
+    private final int[] _pairVersions;
+
+    // packed path coordinates to the first path index they appear at, built when first needed
+    private PackedCoordsIndex _nodeIndex;
+
+    // packed pair end coordinates to the path index of the first coordinate in the pair
+    private final PackedCoordsIndex _pairEndIndex;
+
+    /**
+     * Constructor.
+     *
+     * @param world  The world the path is in.
+     * @param pairs  The waypoint pairs that make up the path. The list is not copied.
+     */
+    WaypointPath(World world, List<WaypointPair> pairs) {
+        PreCon.notNull(world);
+        PreCon.notNull(pairs);
+
+        _world = world;
+        _pairs = Collections.unmodifiableList(pairs);
+        _pairStartIndexes = new int[pairs.size()];
+        _pairVersions = new int[pairs.size()];
+        _pairEndIndex = new PackedCoordsIndex(pairs.size());
+
+        PathSegmentStore store = WaypointPair.getSegmentStore();
+        List<PathSegment> segments = new ArrayList<>(pairs.size() * 3);
+        int pathSize = 1;
+
+        for (int i=0; i < pairs.size(); i++) {
+            WaypointPair pair = pairs.get(i);
+
+            _pairStartIndexes[i] = pathSize - 1;
+            _pairVersions[i] = pair.getVersion();
+            _pairEndIndex.put(pair.getPathNode(pair.getPathSize() - 1), pathSize - 1);
+
+            pathSize += pair.getPathSize() - 1;
+
+            SegmentedPath pairPath = pair.getSegmentedPath();
+            PreCon.isValid(pairPath != null, "Pair does not have a path.");
+            assert pairPath != null;
+
+            for (int j=0; j < pairPath.getSegmentCount(); j++) {
+                PathSegment segment = pairPath.getSegment(j);
+
+                // the first coordinate of a pair is the last coordinate of the previous pair.
+                if (i > 0 && j == 0)
+                    segment = store.tail(segment);
+
+                if (segment != null)
+                    segments.add(segment);
+            }
+        }
+
+        _path = new SegmentedPath(segments);
+    }
+
+    /**
+     * Get the path as a sequence of interned segments.
+     */
+    public SegmentedPath getSegmentedPath() {
+        return _path;
+    }
+
+    /**
+     * Get the world the path is in.
+     */
+    public World getWorld() {
+        return _world;
+    }
+
+    /**
+     * Determine if the path of a waypoint pair has changed since the path
+     * was built.
+     *
+     * <p>A stale path is still usable. Use {@link WaypointPairFactory#refresh} to
+     * get an updated path.</p>
+     */
+    public boolean isStale() {
+
+        for (int i=0; i < _pairVersions.length; i++) {
+            if (_pairs.get(i).getVersion() != _pairVersions[i])
+                return true;
+        }
+
+        return false;
+    }
+
+    /*
+     * Accept the current versions of the pairs as the versions the path was built
+     * from. Used to stop reporting a path as stale after it could not be refreshed.
+     */
+    void acceptPairVersions() {
+
+        for (int i=0; i < _pairVersions.length; i++) {
+            _pairVersions[i] = _pairs.get(i).getVersion();
+        }
+    }
+
+    /**
+     * Get the waypoint pairs that make up the path.
+     *
+     * @return  An unmodifiable list.
+     */
+    public List<WaypointPair> getPairs() {
+        return _pairs;
+    }
+
+    /**
+     * Get the number of waypoint pairs in the path.
+     */
+    public int getPairCount() {
+        return _pairs.size();
+    }
+
+    /**
+     * Get the path index of the first coordinate of a waypoint pair.
+     *
+     * @param pairIndex  The index of the pair.
+     */
+    public int getPairStartIndex(int pairIndex) {
+        return _pairStartIndexes[pairIndex];
+    }
+
+    /**
+     * Get the path index of the first coordinate of the last waypoint pair
+     * that ends at the specified coordinates.
+     *
+     * @param pairEndCoords  The packed coordinates of the pair end.
+     *
+     * @return  The path index or -1 if no pair ends at the coordinates.
+     */
+    public int getPairStartIndex(long pairEndCoords) {
+        return _pairEndIndex.get(pairEndCoords);
+    }
+
+    /**
+     * Get the index of the waypoint pair that a path point is in.
+     *
+     * <p>A path point shared by two pairs is considered to be in the later pair.</p>
+     *
+     * @param pathIndex  The index of the path point.
+     *
+     * @return  The pair index or -1 if the path index is out of range.
+     */
+    public int getPairIndex(int pathIndex) {
+
+        if (pathIndex < 0 || pathIndex >= _path.size())
+            return -1;
+
+        // find the last pair that starts at or before the path index.
+        int low = 0;
+        int high = _pairStartIndexes.length - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (_pairStartIndexes[mid] <= pathIndex)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+
+        return low;
+    }
+
+    /**
+     * Get the first path index of packed coordinates.
+     *
+     * @param coords  The packed coordinates.
+     *
+     * @return  The path index or -1 if the coordinates are not on the path.
+     */
+    public int getPathIndex(long coords) {
+
+        if (_nodeIndex == null) {
+            PackedCoordsIndex index = new PackedCoordsIndex(_path.size());
+
+            for (int i=0; i < _path.size(); i++) {
+                index.putIfAbsent(_path.getNode(i), i);
+            }
+
+            _nodeIndex = index;
+        }
+
+        return _nodeIndex.get(coords);
+    }
+
+    /**
+     * Get the number of coordinates in the path.
+     */
+    public int size() {
+        return _path.size();
+    }
+
+    /**
+     * Get the packed coordinates of a path point.
+     *
+     * @param pathIndex  The index of the path point.
+     *
+     * @return  The packed coordinates. See {@link PackedCoords}.
+     */
+    public long getNode(int pathIndex) {
+        return _path.getNode(pathIndex);
+    }
+
+    /**
+     * Get the straight line distance along the path from the first
+     * coordinate to a path point.
+     *
+     * @param pathIndex  The index of the path point.
+     */
+    public double getDistance(int pathIndex) {
+        return _path.getDistance(pathIndex);
+    }
+
+    /**
+     * Get the total straight line distance along the path.
+     */
+    public double getTotalDistance() {
+        return _path.getLength();
+    }
+
+    /**
+     * Get the index of the last path point that is at or before a distance
+     * along the path.
+     *
+     * @param distance  The distance along the path.
+     *
+     * @return  The path index or -1 if the path is empty.
+     */
+    public int getPathIndexAt(double distance) {
+
+        return _path.getPathIndexAt(distance);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan;
+
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.SegmentedPath;
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import org.bukkit.World;
+
+import javax.annotation.Nullable;
+
+/**
+ * Streaming cursor over the waypoint pairs of a shared {@link WaypointPath}.
+ *
+ * <p>The cursor only holds the pair it is on and never copies the path, so any
+ * number of cursors can walk the same path. Pair paths are found before the cursor
+ * is created; moving the cursor never searches for a path.</p>
+ *
+ * <p>Distances are measured along the path from the start of the pair the cursor
+ * was first moved to.</p>
+ */
+public final class WaypointPathCursor {
+
+    private final WaypointPath _path;
+
+    private int _pairIndex = -1;
+    private SegmentedPath _pairPath;
+    private double _pairStartDistance;
+    private boolean _isBlocked;
+
+    /**
+     * Constructor.
+     *
+     * @param path  The planned path whose pairs are already found.
+     */
+    WaypointPathCursor(WaypointPath path) {
+        PreCon.notNull(path);
+
+        _path = path;
+    }
+
+    /**
+     * Get the world the path is in.
+     */
+    public World getWorld() {
+        return _path.getWorld();
+    }
+
+    /**
+     * Get the number of waypoint pairs.
+     */
+    public int getPairCount() {
+        return _path.getPairCount();
+    }
+
+    /**
+     * Find the index of the last waypoint pair that ends at the specified coordinates.
+     *
+     * @param pairEndCoords  The packed coordinates of the pair end. See {@link PackedCoords}.
+     *
+     * @return  The pair index or -1 if no pair ends at the coordinates.
+     */
+    public int findPairIndex(long pairEndCoords) {
+
+        for (int i = getPairCount() - 1; i >= 0; i--) {
+
+            if (_path.getPairs().get(i).getEndKey() == pairEndCoords)
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Get the index of the waypoint pair the cursor is on.
+     *
+     * @return  The index or -1 if the cursor has not been moved.
+     */
+    public int getPairIndex() {
+        return _pairIndex;
+    }
+
+    /**
+     * Get the path of the waypoint pair the cursor is on.
+     *
+     * @return  The path or null if the cursor has not been moved.
+     */
+    @Nullable
+    public SegmentedPath getPairPath() {
+        return _pairPath;
+    }
+
+    /**
+     * Get the distance along the path to the start of the current waypoint pair.
+     */
+    public double getPairStartDistance() {
+        return _pairStartDistance;
+    }
+
+    /**
+     * Get the distance along the path to the end of the current waypoint pair.
+     */
+    public double getPairEndDistance() {
+        return _pairPath != null
+                ? _pairStartDistance + _pairPath.getLength()
+                : _pairStartDistance;
+    }
+
+    /**
+     * Determine if there is another waypoint pair after the current pair that
+     * the cursor can move to.
+     *
+     * <p>Returns false if a path could not be found for the next pair.</p>
+     */
+    public boolean hasNextPair() {
+        return !_isBlocked && _pairIndex + 1 < getPairCount();
+    }
+
+    /**
+     * Move the cursor to a waypoint pair and expand it.
+     *
+     * <p>The distance along the path is reset so the start of the pair is at 0.</p>
+     *
+     * @param pairIndex  The index of the pair.
+     *
+     * @return  True if the cursor was moved, false if a path could not be found for the pair.
+     */
+    public boolean moveTo(int pairIndex) {
+        PreCon.positiveNumber(pairIndex);
+        PreCon.isValid(pairIndex < getPairCount(), "Pair index out of bounds.");
+
+        SegmentedPath path = expand(pairIndex);
+        if (path == null)
+            return false;
+
+        _pairIndex = pairIndex;
+        _pairPath = path;
+        _pairStartDistance = 0;
+        _isBlocked = false;
+
+        return true;
+    }
+
+    /**
+     * Move the cursor to the next waypoint pair and expand it.
+     *
+     * @return  True if the cursor was moved, false if there are no more pairs or
+     * a path could not be found for the next pair.
+     */
+    public boolean next() {
+
+        if (!hasNextPair())
+            return false;
+
+        SegmentedPath path = expand(_pairIndex + 1);
+        if (path == null) {
+            _isBlocked = true;
+            return false;
+        }
+
+        _pairStartDistance = getPairEndDistance();
+        _pairIndex++;
+        _pairPath = path;
+
+        return true;
+    }
+
+    /*
+     * Get the path of a waypoint pair.
+     */
+    @Nullable
+    private SegmentedPath expand(int pairIndex) {
+        return _path.getPairs().get(pairIndex).getSegmentedPath();
+    }
+}
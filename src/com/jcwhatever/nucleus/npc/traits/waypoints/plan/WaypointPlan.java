@@ -25,8 +25,8 @@
 package com.jcwhatever.nucleus.npc.traits.waypoints.plan;
 
 import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
 import com.jcwhatever.nucleus.utils.PreCon;
-import com.jcwhatever.nucleus.utils.coords.Coords3Di;
 import com.jcwhatever.nucleus.utils.coords.ICoords3Di;
 
 import org.bukkit.Location;
@@ -34,73 +34,54 @@ import org.bukkit.World;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Deque;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
 import javax.annotation.Nullable;
 
 /**
  * Creates a planned path to get to each waypoint from the previous in
  * a waypoint list.
+ *
+ * <p>The path coordinates are held by a {@link WaypointPath} that is shared with
+ * all other plans that use the same waypoints.</p>
+ *
+ * <p>A plan set from waypoint locations does not find its path until it is needed,
+ * normally when a timer starts walking the plan, so pairs queued with
+ * {@link WaypointPairFactory#precompute} have usually been found by then. Timers walk
+ * the shared path using a {@link WaypointPathCursor}, which only holds the waypoint
+ * pair it is on.</p>
  */
 public class WaypointPlan {
 
     private World _world;
-    private List<WaypointPair> _waypointPairs;
-    private List<ICoords3Di> _path;
-
-    // map waypoint pair end location to the number of path coords that come before
-    // the first location in the waypoint pair.
-    private final Map<Location, Integer> _indexMap = new HashMap<>(20);
-
-    // map path index to pair index
-    private final TreeMap<Integer, Integer> _pathPairIndexMap = new TreeMap<>();
+    private List<Location> _waypoints;
+    private boolean _cachePairs;
+    private WaypointPath _path;
 
     /**
      * Clear waypoints.
      */
     public void clear() {
         _world = null;
-
-        if (_waypointPairs != null)
-            _waypointPairs.clear();
-
-        if (_path != null)
-            _path.clear();
-
-        _indexMap.clear();
-        _pathPairIndexMap.clear();
+        _waypoints = null;
+        _path = null;
     }
 
     /**
      * Set the plans world and waypoint locations.
      *
+     * <p>The path is not found until it is needed.</p>
+     *
      * @param world       The {@link org.bukkit.World} the waypoints are in.
-     * @param waypoints   The waypoint locations.
+     * @param waypoints   The waypoint locations. The collection is copied.
      * @param cachePairs  True to cache paths between pairs of waypoints for other instances to use.
+     *
+     * @throws IllegalStateException if a waypoint is not in the specified world.
      */
-    public void set(World world, Deque<Location> waypoints, boolean cachePairs) {
+    public void set(World world, Collection<Location> waypoints, boolean cachePairs) {
         PreCon.notNull(world);
         PreCon.notNull(waypoints);
         PreCon.isValid(!waypoints.isEmpty(), "waypoints cannot be empty.");
 
-        _world = world;
-
-        if (_waypointPairs == null) {
-            _waypointPairs = new ArrayList<>((waypoints.size() / 2) + 1);
-        }
-        else {
-            _waypointPairs.clear();
-        }
-
-        int pathSize = 0;
-        int pairIndex = 0;
-        Location previous = null;
-        WaypointPairFactory pairFactory = NpcTraitPack.getWaypointPairFactory();
-
         for (Location location : waypoints) {
 
             if (location.getWorld() == null)
@@ -110,37 +91,48 @@ public class WaypointPlan {
                 throw new IllegalStateException("Waypoint is not in the correct world. " +
                         "Should be in: " + world.getName() + ", is in: " + location.getWorld().getName());
             }
+        }
 
-            if (previous != null) {
-
-                WaypointPair pair = pairFactory.getPair(previous, location, cachePairs);
-                if (!pair.hasPath())
-                    throw new RuntimeException("Failed to find path for waypoint pair.");
+        _world = world;
+        _waypoints = new ArrayList<>(waypoints);
+        _cachePairs = cachePairs;
+        _path = null;
+    }
 
-                _waypointPairs.add(pair);
+    /**
+     * Set the plans path.
+     *
+     * @param path  The shared path to use.
+     */
+    public void set(WaypointPath path) {
+        PreCon.notNull(path);
 
-                _indexMap.put(location, pathSize);
-                _pathPairIndexMap.put(pathSize, pairIndex);
+        _world = path.getWorld();
+        _waypoints = null;
+        _cachePairs = true;
+        _path = path;
+    }
 
-                pathSize += pair.getPathSize() - 1;
-            }
-            previous = location;
-            pairIndex++;
-        }
+    /**
+     * Update the plans path if the path of one of its waypoint pairs has been
+     * repaired since it was set.
+     *
+     * <p>Pairs are cached the same as when the plan was set. If the path cannot be
+     * updated, the previous path is kept. See {@link WaypointPairFactory#refresh}.</p>
+     *
+     * @return  True if the path was updated, otherwise false.
+     */
+    public boolean refresh() {
 
-        pathSize += 1;
+        if (_path == null || !_path.isStale())
+            return false;
 
-        if (_path == null) {
-            _path = new ArrayList<>(pathSize);
-        }
-        else {
-            _path.clear();
-        }
+        WaypointPath path = NpcTraitPack.getWaypointPairFactory().refresh(_path, _cachePairs);
+        if (path == _path)
+            return false;
 
-        for (int i=0; i < _waypointPairs.size(); i++) {
-            WaypointPair pair = _waypointPairs.get(i);
-            pair.getPath(_path, i == 0, true);
-        }
+        _path = path;
+        return true;
     }
 
     /**
@@ -151,6 +143,44 @@ public class WaypointPlan {
         return _world;
     }
 
+    /**
+     * Get the shared path the plan uses.
+     *
+     * <p>If the plan was set from waypoint locations, the path between every pair
+     * of waypoints is found the first time the path is requested.</p>
+     *
+     * @throws RuntimeException if a path could not be found between a pair of waypoints.
+     */
+    @Nullable
+    public WaypointPath getPath() {
+
+        if (_path == null && _waypoints != null) {
+            _path = NpcTraitPack.getWaypointPairFactory().getPath(_world, _waypoints, _cachePairs);
+            _waypoints = null;
+        }
+
+        return _path;
+    }
+
+    /**
+     * Create a new cursor to walk the plan.
+     *
+     * <p>If the path has not been found yet, it is found first. See {@link #getPath}.</p>
+     *
+     * @return  The cursor or null if the plan is clear.
+     *
+     * @throws RuntimeException if a path could not be found between a pair of waypoints.
+     */
+    @Nullable
+    public WaypointPathCursor getCursor() {
+
+        WaypointPath path = getPath();
+        if (path == null)
+            return null;
+
+        return new WaypointPathCursor(path);
+    }
+
     /**
      * Get all generated {@link WaypointPair}'s for the current plan.
      *
@@ -159,17 +189,20 @@ public class WaypointPlan {
     public void getPairs(List<WaypointPair> output) {
         PreCon.notNull(output);
 
-        output.addAll(_waypointPairs);
+        WaypointPath path = getPath();
+        if (path != null)
+            output.addAll(path.getPairs());
     }
 
     /**
      * Get the number of locations in the planned path.
      */
     public int getPathSize() {
-        if (_path == null)
+        WaypointPath path = getPath();
+        if (path == null)
             return 0;
 
-        return _path.size();
+        return path.size();
     }
 
     /**
@@ -184,12 +217,19 @@ public class WaypointPlan {
         PreCon.positiveNumber(pathIndex);
         PreCon.notNull(output);
 
-        return Coords3Di.copyTo(_path.get(pathIndex), getWorld(), output);
+        WaypointPath path = getPath();
+        PreCon.isValid(path != null, "Plan is clear.");
+        assert path != null;
+
+        return PackedCoords.toLocation(path.getNode(pathIndex), getWorld(), output);
     }
 
     /**
      * Get the path index of a location.
      *
+     * <p>If the location appears more than once in the path, the first
+     * index is returned.</p>
+     *
      * @param location  The location to check.
      *
      * @return  The path index or -1 if the location is not on the path.
@@ -197,15 +237,11 @@ public class WaypointPlan {
     public int getPathIndex(Location location) {
         PreCon.notNull(location);
 
-        Coords3Di coords = Coords3Di.fromLocation(location);
-
-        for (int i=0; i < _path.size(); i++) {
-            ICoords3Di pathCoord = _path.get(0);
+        WaypointPath path = getPath();
+        if (path == null)
+            return -1;
 
-            if (pathCoord.equals(coords))
-                return i;
-        }
-        return -1;
+        return path.getPathIndex(PackedCoords.pack(location));
     }
 
     /**
@@ -216,7 +252,13 @@ public class WaypointPlan {
     public void getPath(Collection<ICoords3Di> output) {
         PreCon.notNull(output);
 
-        output.addAll(_path);
+        WaypointPath path = getPath();
+        if (path == null)
+            return;
+
+        for (int i=0; i < path.size(); i++) {
+            output.add(PackedCoords.toCoords(path.getNode(i)));
+        }
     }
 
     /**
@@ -230,11 +272,11 @@ public class WaypointPlan {
     public int getPairStartIndex(Location pairEndLocation) {
         PreCon.notNull(pairEndLocation);
 
-        Integer index = _indexMap.get(pairEndLocation);
-        if (index == null)
+        WaypointPath path = getPath();
+        if (path == null)
             return -1;
 
-        return index;
+        return path.getPairStartIndex(PackedCoords.pack(pairEndLocation));
     }
 
     /**
@@ -248,9 +290,10 @@ public class WaypointPlan {
     public int getPairIndex(int pathIndex) {
         PreCon.positiveNumber(pathIndex);
 
-        Entry<Integer, Integer> entry = _pathPairIndexMap.floorEntry(pathIndex);
-        if (entry == null)
+        WaypointPath path = getPath();
+        if (path == null)
             return -1;
-        return entry.getValue();
+
+        return path.getPairIndex(pathIndex);
     }
 }
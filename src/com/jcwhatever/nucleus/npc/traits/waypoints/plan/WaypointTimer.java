@@ -25,16 +25,15 @@
 package com.jcwhatever.nucleus.npc.traits.waypoints.plan;
 
 import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.SegmentedPath;
+import com.jcwhatever.nucleus.npc.traits.waypoints.provider.IWaypointProvider;
 import com.jcwhatever.nucleus.npc.traits.waypoints.provider.SimpleWaypointProvider;
 import com.jcwhatever.nucleus.utils.PreCon;
-import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
 import com.jcwhatever.nucleus.utils.coords.LocationUtils;
 
 import org.bukkit.Location;
 
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.WeakHashMap;
 import javax.annotation.Nullable;
 
 /**
@@ -42,34 +41,54 @@ import javax.annotation.Nullable;
  *
  * <p>Used to determine approximately where a despawned NPC should be within its
  * waypoint path given time.</p>
+ *
+ * <p>A running timer is represented by the path, the tick it started at and its
+ * speed. The position is calculated when requested and the timer only wakes when
+ * the position enters a different chunk or waypoint pair. Running timers are
+ * scheduled in a tick based timing wheel so only timers that are due are visited
+ * each tick.</p>
+ *
+ * <p>The path is found when the timer starts and is walked with a
+ * {@link WaypointPathCursor} that only holds the waypoint pair the position is on.
+ * Timers never search for a path while running.</p>
  */
 public abstract class WaypointTimer {
 
-    private static final Location PREVIOUS_PATH = new Location(null, 0, 0, 0);
     private static final Location CURRENT_PATH = new Location(null, 0, 0, 0);
-    private static final Map<WaypointTimer, Void> _instances = new WeakHashMap<>(25);
-    private static PositionTimer _timer;
+
+    // allowance for rounding when converting elapsed ticks to distance
+    private static final double DISTANCE_EPSILON = 0.000001D;
 
     private final WaypointPlan _plan = new WaypointPlan();
+    private final TimerWheel _wheel;
 
-    private SimpleWaypointProvider _waypoints;
+    private IWaypointProvider _waypoints;
+    private WaypointPathCursor _cursor;
+
+    // index of the current position in the path of the current pair
     private int _pathIndex = -1;
-    private int _pairIndex;
-    private long _nextStepTime = 0;
+
+    // chunk of the position when onMove was last invoked
+    private int _chunkX;
+    private int _chunkZ;
+    private long _startTick;
+    private double _distancePerTick;
     private double _speed;
     private final Location _currentPosition = new Location(null, 0, 0, 0);
 
     private boolean _isRunning;
 
+    // timing wheel links, managed by TimerWheel
+    WaypointTimer wheelNext;
+    WaypointTimer wheelPrev;
+    long wheelDueTick;
+    int wheelSlot = -1;
+
     /**
      * Constructor.
      */
     public WaypointTimer () {
-
-        if (_timer == null) {
-            _timer = new PositionTimer();
-            Scheduler.runTaskRepeat(NpcTraitPack.getPlugin(), 1, 1, new PositionTimer());
-        }
+        _wheel = TimerWheel.get();
     }
 
     /**
@@ -92,6 +111,23 @@ public abstract class WaypointTimer {
         }
     }
 
+    /**
+     * Initialize timer with a provider whose waypoints follow a planned path.
+     *
+     * <p>Used with providers whose waypoints are shared, such as a route, so the
+     * path does not need to be looked up from the waypoints.</p>
+     *
+     * @param waypoints  The waypoints to use.
+     * @param path       The planned path through the waypoints.
+     */
+    public void init(IWaypointProvider waypoints, WaypointPath path) {
+        PreCon.notNull(waypoints);
+        PreCon.notNull(path);
+
+        _waypoints = waypoints;
+        _plan.set(path);
+    }
+
     /**
      * Determine if the timer is running.
      */
@@ -109,6 +145,9 @@ public abstract class WaypointTimer {
     /**
      * Start the timer.
      *
+     * <p>If the path of the waypoints has not been found yet, it is found first.
+     * The timer is not started if a path could not be found.</p>
+     *
      * @return  True if the timer was started, otherwise false.
      */
     public boolean start(double speed) {
@@ -118,25 +157,61 @@ public abstract class WaypointTimer {
 
         _speed = speed;
 
-        // get the path point index of the current destination.
+        // use repaired paths if blocks on the path have changed. The stale
+        // path is still used if a pair can no longer be found.
+        _plan.refresh();
 
-        _pathIndex = -1;
+        WaypointPathCursor cursor;
 
-        while (true) {
-            _pathIndex = _plan.getPairStartIndex(_waypoints.getCurrent(CURRENT_PATH));
-            if (_pathIndex == -1 && _waypoints.hasNext())
+        try {
+            cursor = _plan.getCursor();
+        }
+        catch (RuntimeException e) {
+
+            NpcTraitPack.getPlugin().getMessenger().warning(
+                    "Failed to start waypoint timer, a path could not be found: " + e.getMessage());
+
+            return false;
+        }
+
+        // get the index of the waypoint pair that ends at the current destination.
+
+        int pairIndex = -1;
+
+        // a looping provider always has a next waypoint so the search is limited
+        // to the number of waypoint pairs.
+        int maxSearch = cursor != null ? cursor.getPairCount() + 1 : 0;
+
+        while (cursor != null) {
+            Location current = _waypoints.getCurrent(CURRENT_PATH);
+
+            pairIndex = current != null ? cursor.findPairIndex(PackedCoords.pack(current)) : -1;
+            if (pairIndex == -1 && _waypoints.hasNext() && maxSearch-- > 0)
                 _waypoints.next(CURRENT_PATH);
             else
                 break;
         }
 
-        if (_pathIndex == -1) {
+        if (pairIndex == -1 || !cursor.moveTo(pairIndex)) {
             finish();
         } else {
-            // get the pair index of the current path point index.
-            _pairIndex = _plan.getPairIndex(_pathIndex);
+
+            _cursor = cursor;
+            _pathIndex = 0;
+            _chunkX = Integer.MIN_VALUE;
+            _chunkZ = Integer.MIN_VALUE;
+
+            // A path step takes (distance / speed^2 * 3) ticks.
+            _startTick = _wheel.getCurrentTick();
+            _distancePerTick = (speed * speed) / 3;
+
+            SegmentedPath pairPath = cursor.getPairPath();
+            assert pairPath != null;
+
+            PackedCoords.toLocation(pairPath.getNode(0), cursor.getWorld(), _currentPosition);
+
             _isRunning = true;
-            _instances.put(this, null);
+            _wheel.schedule(this, 1);
             return true;
         }
 
@@ -153,8 +228,11 @@ public abstract class WaypointTimer {
     @Nullable
     public Location stop(@Nullable Location output) {
 
+        if (_isRunning)
+            update();
+
         _isRunning = false;
-        _instances.remove(this);
+        _wheel.cancel(this);
 
         if (output == null)
             return null;
@@ -162,16 +240,37 @@ public abstract class WaypointTimer {
         return LocationUtils.copy(_currentPosition, output);
     }
 
+    /**
+     * Get the position the NPC should currently be at.
+     *
+     * <p>If the timer is not running, the position the timer was stopped at is returned.</p>
+     *
+     * @param output  The output location to put the current position values into.
+     *
+     * @return  The output location.
+     */
+    public Location getPosition(Location output) {
+        PreCon.notNull(output);
+
+        if (_isRunning)
+            update();
+
+        return LocationUtils.copy(_currentPosition, output);
+    }
+
     /**
      * Dispose the timer. Can be re-initialized.
      */
     public void dispose() {
         stop(null);
         _plan.clear();
+        _cursor = null;
     }
 
     /**
-     * Invoked when the NPC moves to the next position.
+     * Invoked when the NPC position enters a different chunk.
+     *
+     * <p>Also invoked with the start position when the timer is started.</p>
      *
      * @param currentPosition  The current position.
      */
@@ -183,94 +282,100 @@ public abstract class WaypointTimer {
     protected abstract void onPathComplete();
 
     /*
-     * Attempt to move to the next path point position.
+     * Invoked by the timing wheel when the position enters a different
+     * chunk or waypoint pair.
      */
-    private void next() {
+    void onDue() {
 
-        if (System.currentTimeMillis() < _nextStepTime)
+        if (!_isRunning)
             return;
 
-        _pathIndex++;
+        update();
 
-        // check if path is finished
-        if (_pathIndex >= _plan.getPathSize() || !_waypoints.hasNext()) {
+        SegmentedPath pairPath = _cursor.getPairPath();
+        assert pairPath != null;
 
+        // check if path is finished
+        if ((!_cursor.hasNextPair() && _pathIndex >= pairPath.size() - 1) || !_waypoints.hasNext()) {
             finish();
             return;
         }
 
-        int pairIndex = _plan.getPairIndex(_pathIndex);
-        if (pairIndex == -1) {
-            finish();
-        } else {
+        long node = pairPath.getNode(_pathIndex);
+        int chunkX = PackedCoords.getChunkX(node);
+        int chunkZ = PackedCoords.getChunkZ(node);
 
-            // see if the current path index is in a new path pair
-            if (pairIndex != _pairIndex) {
-                _waypoints.next(CURRENT_PATH);
-                _pairIndex = pairIndex;
-            }
+        if (chunkX != _chunkX || chunkZ != _chunkZ) {
+            _chunkX = chunkX;
+            _chunkZ = chunkZ;
 
-            Location current = _plan.getLocation(_pathIndex, _currentPosition);
+            onMove(LocationUtils.copy(_currentPosition));
 
-            onMove(LocationUtils.copy(current));
-
-            // calculate when the next increment should happen
-            _nextStepTime = calculateNextStepTime();
+            // onMove may have stopped the timer
+            if (!_isRunning)
+                return;
         }
+
+        scheduleNext();
     }
 
     /*
-     * Calculate when to move to the next position.
+     * Calculate the current path index from the elapsed time and advance
+     * the waypoint provider to the current waypoint pair.
      */
-    private long calculateNextStepTime() {
-
-        double distance;
+    private void update() {
 
-        if (_pathIndex == 0)
-            return System.currentTimeMillis();
+        long elapsed = _wheel.getCurrentTick() - _startTick;
+        double distance = elapsed * _distancePerTick + DISTANCE_EPSILON;
 
-        Location previous = _plan.getLocation(_pathIndex - 1, PREVIOUS_PATH);
-        Location current = _plan.getLocation(_pathIndex, CURRENT_PATH);
+        // a path point shared by two pairs is in the later pair. The next pair
+        // is only expanded when the position reaches it.
+        while (distance >= _cursor.getPairEndDistance() && _cursor.next()) {
+            _waypoints.next(CURRENT_PATH);
+        }
 
-        distance = previous.distanceSquared(current);
+        SegmentedPath pairPath = _cursor.getPairPath();
+        assert pairPath != null;
 
-        double time = distance / (_speed * _speed);
+        _pathIndex = pairPath.getPathIndexAt(distance - _cursor.getPairStartDistance());
 
-        return System.currentTimeMillis() + (int)(time * 50 * 3);
+        PackedCoords.toLocation(pairPath.getNode(_pathIndex), _cursor.getWorld(), _currentPosition);
     }
 
     /*
-     * Stop the timer and invoke onPathComplete.
+     * Schedule the timer to wake when the position reaches the next chunk
+     * or waypoint pair.
      */
-    private void finish() {
-        stop(null);
-        onPathComplete();
-    }
+    private void scheduleNext() {
 
-    /*
-     * Global position timer.
-     */
-    private static class PositionTimer implements Runnable {
+        // a timer with no speed never moves and waits to be stopped.
+        if (_distancePerTick <= 0)
+            return;
 
-        final ArrayList<WaypointTimer> timers = new ArrayList<>(25);
+        SegmentedPath pairPath = _cursor.getPairPath();
+        assert pairPath != null;
 
-        @Override
-        public void run() {
+        // pair paths are split into segments where they enter a different chunk
+        // so the next chunk change is at the start of the next segment.
+        int segment = pairPath.getSegmentIndex(_pathIndex);
 
-            timers.addAll(_instances.keySet());
+        double target = segment + 1 < pairPath.getSegmentCount()
+                ? _cursor.getPairStartDistance() + pairPath.getDistance(pairPath.getSegmentOffset(segment + 1))
+                : _cursor.getPairEndDistance();
 
-            if (timers.isEmpty())
-                return;
+        long elapsed = _wheel.getCurrentTick() - _startTick;
+        double remaining = target - elapsed * _distancePerTick;
 
-            for (WaypointTimer timer : timers) {
+        long ticks = (long)Math.ceil(remaining / _distancePerTick);
 
-                if (!timer.isRunning())
-                    continue;
-
-                timer.next();
-            }
+        _wheel.schedule(this, (int)Math.max(1, Math.min(Integer.MAX_VALUE, ticks)));
+    }
 
-            timers.clear();
-        }
+    /*
+     * Stop the timer and invoke onPathComplete.
+     */
+    private void finish() {
+        stop(null);
+        onPathComplete();
     }
 }
@@ -0,0 +1,139 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.hierarchy;
+
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.IBlockView;
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Abstract graph of the portals between chunks in a world.
+ *
+ * <p>The portals of a chunk are found the first time the chunk is needed and
+ * cached until a block near them changes or the chunk is evicted from the cache.</p>
+ */
+public class ChunkPortalGraph {
+
+    private final IBlockView _view;
+    private final Map<Long, ChunkPortals> _chunks;
+
+    /**
+     * Constructor.
+     *
+     * @param view       The block view of the world.
+     * @param maxChunks  The max number of chunks to cache.
+     */
+    public ChunkPortalGraph(IBlockView view, final int maxChunks) {
+        PreCon.notNull(view);
+        PreCon.greaterThanZero(maxChunks, "maxChunks");
+
+        _view = view;
+        _chunks = new LinkedHashMap<Long, ChunkPortals>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ChunkPortals> eldest) {
+                return size() > maxChunks;
+            }
+        };
+    }
+
+    /**
+     * Get the block view of the world.
+     */
+    public IBlockView getView() {
+        return _view;
+    }
+
+    /**
+     * Get the number of chunks cached.
+     */
+    public int size() {
+        return _chunks.size();
+    }
+
+    /**
+     * Get the portals of a chunk, finding them if not cached.
+     *
+     * @param chunkX  The chunk X coordinate.
+     * @param chunkZ  The chunk Z coordinate.
+     */
+    ChunkPortals getPortals(int chunkX, int chunkZ) {
+
+        Long key = getKey(chunkX, chunkZ);
+
+        ChunkPortals portals = _chunks.get(key);
+        if (portals == null) {
+            portals = new ChunkPortals(_view, chunkX, chunkZ);
+            _chunks.put(key, portals);
+        }
+
+        return portals;
+    }
+
+    /**
+     * Invalidate the portals affected by a block change.
+     *
+     * <p>Neighboring chunks are also invalidated when the block is on a chunk edge
+     * since their portals depend on the blocks on the other side of the edge.</p>
+     *
+     * @param x  The X coordinate of the changed block.
+     * @param z  The Z coordinate of the changed block.
+     */
+    public void invalidate(int x, int z) {
+
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+
+        _chunks.remove(getKey(chunkX, chunkZ));
+
+        if ((x & 15) == 0)
+            _chunks.remove(getKey(chunkX - 1, chunkZ));
+        else if ((x & 15) == 15)
+            _chunks.remove(getKey(chunkX + 1, chunkZ));
+
+        if ((z & 15) == 0)
+            _chunks.remove(getKey(chunkX, chunkZ - 1));
+        else if ((z & 15) == 15)
+            _chunks.remove(getKey(chunkX, chunkZ + 1));
+    }
+
+    /**
+     * Remove all cached chunks.
+     */
+    public void clear() {
+        _chunks.clear();
+    }
+
+    /**
+     * Get the key of a chunk.
+     *
+     * @param chunkX  The chunk X coordinate.
+     * @param chunkZ  The chunk Z coordinate.
+     */
+    static long getKey(int chunkX, int chunkZ) {
+        return ((long)chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
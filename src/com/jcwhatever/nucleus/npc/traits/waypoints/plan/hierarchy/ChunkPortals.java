@@ -0,0 +1,249 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.hierarchy;
+
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.GridPathSearch;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.IBlockView;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoordsIndex;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PathWalkability;
+
+import java.util.Arrays;
+
+/**
+ * The portals of a single chunk in a {@link ChunkPortalGraph}.
+ *
+ * <p>A portal is a walkable block on the edge of the chunk that is next to a walkable
+ * block at the same height in the neighboring chunk (its partner). Each contiguous run
+ * of open edge blocks produces one portal at the middle of the run. The path costs
+ * between all portals within the chunk are precomputed.</p>
+ */
+class ChunkPortals {
+
+    // how far below the highest block of an edge column to look for portals.
+    static final int SCAN_DEPTH = 16;
+
+    private static final int EAST = 0;
+    private static final int WEST = 1;
+    private static final int SOUTH = 2;
+    private static final int NORTH = 3;
+
+    final int chunkX;
+    final int chunkZ;
+
+    private long[] _cells = new long[8];
+    private long[] _partners = new long[8];
+    private int _size;
+    private int[] _costs;
+    private final PackedCoordsIndex _index = new PackedCoordsIndex(8);
+
+    /**
+     * Constructor.
+     *
+     * @param view    The block view.
+     * @param chunkX  The chunk X coordinate.
+     * @param chunkZ  The chunk Z coordinate.
+     */
+    ChunkPortals(IBlockView view, int chunkX, int chunkZ) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+
+        scanEdge(view, EAST);
+        scanEdge(view, WEST);
+        scanEdge(view, SOUTH);
+        scanEdge(view, NORTH);
+
+        _cells = Arrays.copyOf(_cells, _size);
+        _partners = Arrays.copyOf(_partners, _size);
+        _costs = new int[_size * _size];
+
+        GridPathSearch search = new GridPathSearch(view)
+                .setChunkBounds(chunkX, chunkZ);
+
+        int[] row = new int[_size];
+
+        for (int i=0; i < _size; i++) {
+            search.getCosts(_cells[i], _cells, row);
+            System.arraycopy(row, 0, _costs, i * _size, _size);
+        }
+    }
+
+    /**
+     * Get the number of portals.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Get the packed coordinates of a portal.
+     *
+     * @param portal  The portal index.
+     */
+    long getCell(int portal) {
+        return _cells[portal];
+    }
+
+    /**
+     * Get the packed coordinates of the partner block of a portal
+     * in the neighboring chunk.
+     *
+     * @param portal  The portal index.
+     */
+    long getPartner(int portal) {
+        return _partners[portal];
+    }
+
+    /**
+     * Get all portal packed coordinates.
+     *
+     * <p>The returned array should not be modified.</p>
+     */
+    long[] getCells() {
+        return _cells;
+    }
+
+    /**
+     * Get the path cost between two portals within the chunk.
+     *
+     * @param from  The index of the first portal.
+     * @param to    The index of the second portal.
+     *
+     * @return  The cost or -1 if there is no path within the chunk.
+     */
+    int getCost(int from, int to) {
+        return _costs[from * _size + to];
+    }
+
+    /**
+     * Get the index of the portal at packed coordinates.
+     *
+     * @param cell  The packed coordinates.
+     *
+     * @return  The portal index or -1 if there is no portal at the coordinates.
+     */
+    int getPortal(long cell) {
+        return _index.get(cell);
+    }
+
+    /*
+     * Find the portals on one edge of the chunk.
+     */
+    private void scanEdge(IBlockView view, int edge) {
+
+        int baseX = chunkX << 4;
+        int baseZ = chunkZ << 4;
+
+        int[] insideX = new int[16];
+        int[] insideZ = new int[16];
+        int[] outsideX = new int[16];
+        int[] outsideZ = new int[16];
+        int[] minY = new int[16];
+        int[] maxY = new int[16];
+
+        int scanMin = Integer.MAX_VALUE;
+        int scanMax = Integer.MIN_VALUE;
+
+        for (int i=0; i < 16; i++) {
+
+            switch (edge) {
+                case EAST:
+                    insideX[i] = baseX + 15;
+                    outsideX[i] = baseX + 16;
+                    insideZ[i] = outsideZ[i] = baseZ + i;
+                    break;
+                case WEST:
+                    insideX[i] = baseX;
+                    outsideX[i] = baseX - 1;
+                    insideZ[i] = outsideZ[i] = baseZ + i;
+                    break;
+                case SOUTH:
+                    insideZ[i] = baseZ + 15;
+                    outsideZ[i] = baseZ + 16;
+                    insideX[i] = outsideX[i] = baseX + i;
+                    break;
+                default:
+                    insideZ[i] = baseZ;
+                    outsideZ[i] = baseZ - 1;
+                    insideX[i] = outsideX[i] = baseX + i;
+                    break;
+            }
+
+            // the range is the same whichever side of the edge is scanning
+            // so both chunks find the same portals.
+            int insideHighest = view.getHighestY(insideX[i], insideZ[i]);
+            int outsideHighest = view.getHighestY(outsideX[i], outsideZ[i]);
+
+            minY[i] = Math.max(1, Math.min(insideHighest, outsideHighest) - SCAN_DEPTH);
+            maxY[i] = Math.min(view.getMaxHeight() - 2, Math.max(insideHighest, outsideHighest) + 1);
+
+            scanMin = Math.min(scanMin, minY[i]);
+            scanMax = Math.max(scanMax, maxY[i]);
+        }
+
+        for (int y = scanMin; y <= scanMax; y++) {
+
+            int runStart = -1;
+
+            for (int i=0; i <= 16; i++) {
+
+                boolean isOpen = i < 16 && y >= minY[i] && y <= maxY[i] &&
+                        PathWalkability.isWalkable(view, insideX[i], y, insideZ[i]) &&
+                        PathWalkability.isWalkable(view, outsideX[i], y, outsideZ[i]);
+
+                if (isOpen) {
+                    if (runStart == -1)
+                        runStart = i;
+                }
+                else if (runStart != -1) {
+                    int middle = (runStart + i - 1) / 2;
+
+                    addPortal(PackedCoords.pack(insideX[middle], y, insideZ[middle]),
+                            PackedCoords.pack(outsideX[middle], y, outsideZ[middle]));
+
+                    runStart = -1;
+                }
+            }
+        }
+    }
+
+    /*
+     * Add a portal. A corner block can only be one portal.
+     */
+    private void addPortal(long cell, long partner) {
+
+        if (!_index.putIfAbsent(cell, _size))
+            return;
+
+        if (_size == _cells.length) {
+            _cells = Arrays.copyOf(_cells, _size * 2);
+            _partners = Arrays.copyOf(_partners, _size * 2);
+        }
+
+        _cells[_size] = cell;
+        _partners[_size] = partner;
+        _size++;
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.hierarchy;
+
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.GridPathSearch;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.IntMinHeap;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoords;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.PackedCoordsIndex;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.path.WorldBlockView;
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Hierarchical path finder for long distance ground paths.
+ *
+ * <p>Searches an abstract graph of the portals between chunks (see {@link ChunkPortalGraph})
+ * and then refines each step of the abstract path with a short search limited to a
+ * single chunk. The portal graph of each world is cached and updated when blocks change.</p>
+ */
+public class HierarchicalPathfinder {
+
+    private final Map<World, ChunkPortalGraph> _graphs = new HashMap<>(5);
+
+    private int _maxChunks = 4096;
+    private int _maxNodes = 5000;
+
+    /**
+     * Get the max number of chunks cached per world.
+     *
+     * <p>Default is 4096.</p>
+     */
+    public int getMaxChunks() {
+        return _maxChunks;
+    }
+
+    /**
+     * Set the max number of chunks cached per world.
+     *
+     * <p>Clears all cached chunks.</p>
+     *
+     * @param maxChunks  The max chunks. Must be greater than 0.
+     */
+    public void setMaxChunks(int maxChunks) {
+        PreCon.greaterThanZero(maxChunks, "maxChunks");
+
+        _maxChunks = maxChunks;
+        _graphs.clear();
+    }
+
+    /**
+     * Get the max number of portals the abstract search can visit before giving up.
+     *
+     * <p>Default is 5000.</p>
+     */
+    public int getMaxNodes() {
+        return _maxNodes;
+    }
+
+    /**
+     * Set the max number of portals the abstract search can visit before giving up.
+     *
+     * @param maxNodes  The max nodes. Must be greater than 0.
+     */
+    public void setMaxNodes(int maxNodes) {
+        PreCon.greaterThanZero(maxNodes, "maxNodes");
+
+        _maxNodes = maxNodes;
+    }
+
+    /**
+     * Search for a path between two locations.
+     *
+     * @param start  The start location.
+     * @param end    The end location.
+     *
+     * @return  The path as packed coordinates (see {@link PackedCoords}) or null if a path
+     * was not found or the locations are in the same chunk.
+     */
+    @Nullable
+    public long[] search(Location start, Location end) {
+        PreCon.notNull(start);
+        PreCon.notNull(end);
+        PreCon.notNull(start.getWorld());
+        PreCon.isValid(start.getWorld().equals(end.getWorld()), "Worlds do not match.");
+
+        ChunkPortalGraph graph = getGraph(start.getWorld());
+
+        return new AbstractSearch(graph, PackedCoords.pack(start), PackedCoords.pack(end), _maxNodes)
+                .run();
+    }
+
+    /**
+     * Invalidate the cached portals affected by a block change.
+     *
+     * @param world  The world of the block.
+     * @param x      The X coordinate of the block.
+     * @param z      The Z coordinate of the block.
+     */
+    public void invalidate(World world, int x, int z) {
+        PreCon.notNull(world);
+
+        ChunkPortalGraph graph = _graphs.get(world);
+        if (graph != null)
+            graph.invalidate(x, z);
+    }
+
+    /**
+     * Remove the cached portal graph of a world.
+     *
+     * @param world  The world.
+     */
+    public void clear(World world) {
+        PreCon.notNull(world);
+
+        _graphs.remove(world);
+    }
+
+    private ChunkPortalGraph getGraph(World world) {
+
+        ChunkPortalGraph graph = _graphs.get(world);
+        if (graph == null) {
+            graph = new ChunkPortalGraph(new WorldBlockView(world), _maxChunks);
+            _graphs.put(world, graph);
+        }
+
+        return graph;
+    }
+
+    /*
+     * Search state of a single abstract search.
+     */
+    private static class AbstractSearch {
+
+        static final int START = 0;
+        static final int END = 1;
+
+        final ChunkPortalGraph graph;
+        final GridPathSearch localSearch;
+        final long start;
+        final long end;
+        final int maxNodes;
+
+        final PackedCoordsIndex index = new PackedCoordsIndex(64);
+        final IntMinHeap open = new IntMinHeap(64);
+        long[] nodes = new long[64];
+        int[] costs = new int[64];
+        int[] parents = new int[64];
+        boolean[] closed = new boolean[64];
+        int nodeCount;
+
+        AbstractSearch(ChunkPortalGraph graph, long start, long end, int maxNodes) {
+            this.graph = graph;
+            this.localSearch = new GridPathSearch(graph.getView());
+            this.start = start;
+            this.end = end;
+            this.maxNodes = maxNodes;
+        }
+
+        @Nullable
+        long[] run() {
+
+            int startChunkX = PackedCoords.getChunkX(start);
+            int startChunkZ = PackedCoords.getChunkZ(start);
+            int endChunkX = PackedCoords.getChunkX(end);
+            int endChunkZ = PackedCoords.getChunkZ(end);
+
+            if (startChunkX == endChunkX && startChunkZ == endChunkZ)
+                return null;
+
+            ChunkPortals startPortals = graph.getPortals(startChunkX, startChunkZ);
+            int[] startCosts = new int[startPortals.size()];
+            localSearch.setChunkBounds(startChunkX, startChunkZ)
+                    .getCosts(start, startPortals.getCells(), startCosts);
+
+            ChunkPortals endPortals = graph.getPortals(endChunkX, endChunkZ);
+            int[] endCosts = new int[endPortals.size()];
+            localSearch.setChunkBounds(endChunkX, endChunkZ)
+                    .getCosts(end, endPortals.getCells(), endCosts);
+
+            addNode(start, 0, -1);
+            addNode(end, Integer.MAX_VALUE, -1);
+            open.push(START, 0);
+
+            while (!open.isEmpty()) {
+
+                int node = open.pop();
+                if (closed[node])
+                    continue;
+
+                closed[node] = true;
+
+                if (node == END)
+                    return refine();
+
+                if (nodeCount >= maxNodes)
+                    return null;
+
+                if (node == START) {
+                    for (int i=0; i < startPortals.size(); i++) {
+                        if (startCosts[i] >= 0)
+                            relax(getNode(startPortals.getCell(i)), startCosts[i], START);
+                    }
+                    continue;
+                }
+
+                long cell = nodes[node];
+                int chunkX = PackedCoords.getChunkX(cell);
+                int chunkZ = PackedCoords.getChunkZ(cell);
+
+                ChunkPortals portals = chunkX == endChunkX && chunkZ == endChunkZ
+                        ? endPortals
+                        : graph.getPortals(chunkX, chunkZ);
+
+                int portal = portals.getPortal(cell);
+                if (portal == -1)
+                    continue;
+
+                relax(getNode(portals.getPartner(portal)),
+                        costs[node] + GridPathSearch.STRAIGHT_COST, node);
+
+                for (int i=0; i < portals.size(); i++) {
+
+                    int cost = portals.getCost(portal, i);
+                    if (i == portal || cost < 0)
+                        continue;
+
+                    relax(getNode(portals.getCell(i)), costs[node] + cost, node);
+                }
+
+                if (portals == endPortals && endCosts[portal] >= 0)
+                    relax(END, costs[node] + endCosts[portal], node);
+            }
+
+            return null;
+        }
+
+        /*
+         * Refine the abstract path into a block path.
+         */
+        @Nullable
+        long[] refine() {
+
+            int count = 0;
+            for (int i = END; i != -1; i = parents[i])
+                count++;
+
+            long[] cells = new long[count];
+            for (int i = END; i != -1; i = parents[i])
+                cells[--count] = nodes[i];
+
+            long[] path = new long[cells.length * 8];
+            int size = 0;
+
+            path[size++] = cells[0];
+
+            for (int i=1; i < cells.length; i++) {
+
+                long from = cells[i - 1];
+                long to = cells[i];
+                int chunkX = PackedCoords.getChunkX(from);
+                int chunkZ = PackedCoords.getChunkZ(from);
+
+                long[] piece;
+
+                // portal partners are next to each other across a chunk edge.
+                if (chunkX != PackedCoords.getChunkX(to) || chunkZ != PackedCoords.getChunkZ(to)) {
+                    piece = new long[] { from, to };
+                }
+                else {
+                    piece = localSearch.setChunkBounds(chunkX, chunkZ).search(from, to);
+                    if (piece == null)
+                        return null;
+                }
+
+                if (size + piece.length > path.length)
+                    path = Arrays.copyOf(path, Math.max(path.length * 2, size + piece.length));
+
+                System.arraycopy(piece, 1, path, size, piece.length - 1);
+                size += piece.length - 1;
+            }
+
+            return Arrays.copyOf(path, size);
+        }
+
+        void relax(int node, int cost, int parent) {
+
+            if (closed[node] || cost >= costs[node])
+                return;
+
+            costs[node] = cost;
+            parents[node] = parent;
+
+            open.push(node, node == END
+                    ? cost
+                    : cost + GridPathSearch.estimate(nodes[node], end));
+        }
+
+        int getNode(long cell) {
+
+            int node = index.get(cell);
+            if (node == -1) {
+                node = addNode(cell, Integer.MAX_VALUE, -1);
+                index.put(cell, node);
+            }
+
+            return node;
+        }
+
+        int addNode(long cell, int cost, int parent) {
+
+            if (nodeCount == nodes.length) {
+                int size = nodeCount * 2;
+                nodes = Arrays.copyOf(nodes, size);
+                costs = Arrays.copyOf(costs, size);
+                parents = Arrays.copyOf(parents, size);
+                closed = Arrays.copyOf(closed, size);
+            }
+
+            int node = nodeCount++;
+
+            nodes[node] = cell;
+            costs[node] = cost;
+            parents[node] = parent;
+            return node;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Ground based AStar search over packed block coordinates (see {@link PackedCoords}).
+ *
+ * <p>Moves to the 8 surrounding block columns. Straight moves can step up or down
+ * one block. Diagonal moves must stay at the same height and cannot cut corners.
+ * The search can be limited to a rectangle of block columns.</p>
+ *
+ * <p>An instance holds the state of the current search so it must not be shared
+ * between threads.</p>
+ */
+public class GridPathSearch {
+
+    /**
+     * The cost of a straight move.
+     */
+    public static final int STRAIGHT_COST = 10;
+
+    /**
+     * The cost of a diagonal move.
+     */
+    public static final int DIAGONAL_COST = 14;
+
+    private static final int[] DIRECTION_X = new int[] { 1, -1, 0, 0, 1, 1, -1, -1 };
+    private static final int[] DIRECTION_Z = new int[] { 0, 0, 1, -1, 1, -1, 1, -1 };
+
+    private final IBlockView _view;
+
+    private int _minX = Integer.MIN_VALUE;
+    private int _minZ = Integer.MIN_VALUE;
+    private int _maxX = Integer.MAX_VALUE;
+    private int _maxZ = Integer.MAX_VALUE;
+    private int _maxNodes = 10000;
+
+    private final PackedCoordsIndex _index = new PackedCoordsIndex(256);
+    private final IntMinHeap _open = new IntMinHeap(256);
+    private long[] _nodes = new long[256];
+    private int[] _costs = new int[256];
+    private int[] _parents = new int[256];
+    private boolean[] _closed = new boolean[256];
+    private int _nodeCount;
+
+    /**
+     * Constructor.
+     *
+     * @param view  The block view to search.
+     */
+    public GridPathSearch(IBlockView view) {
+        PreCon.notNull(view);
+
+        _view = view;
+    }
+
+    /**
+     * Limit the search to a rectangle of block columns.
+     *
+     * @param minX  The min X coordinate.
+     * @param minZ  The min Z coordinate.
+     * @param maxX  The max X coordinate.
+     * @param maxZ  The max Z coordinate.
+     *
+     * @return  Self for chaining.
+     */
+    public GridPathSearch setBounds(int minX, int minZ, int maxX, int maxZ) {
+        _minX = minX;
+        _minZ = minZ;
+        _maxX = maxX;
+        _maxZ = maxZ;
+
+        return this;
+    }
+
+    /**
+     * Limit the search to the block columns of a chunk.
+     *
+     * @param chunkX  The chunk X coordinate.
+     * @param chunkZ  The chunk Z coordinate.
+     *
+     * @return  Self for chaining.
+     */
+    public GridPathSearch setChunkBounds(int chunkX, int chunkZ) {
+        return setBounds(chunkX << 4, chunkZ << 4, (chunkX << 4) + 15, (chunkZ << 4) + 15);
+    }
+
+    /**
+     * Remove the search bounds.
+     *
+     * @return  Self for chaining.
+     */
+    public GridPathSearch clearBounds() {
+        return setBounds(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the max number of nodes a search can visit before giving up.
+     *
+     * <p>Default is 10000.</p>
+     */
+    public int getMaxNodes() {
+        return _maxNodes;
+    }
+
+    /**
+     * Set the max number of nodes a search can visit before giving up.
+     *
+     * @param maxNodes  The max nodes. Must be greater than 0.
+     *
+     * @return  Self for chaining.
+     */
+    public GridPathSearch setMaxNodes(int maxNodes) {
+        PreCon.greaterThanZero(maxNodes, "maxNodes");
+
+        _maxNodes = maxNodes;
+
+        return this;
+    }
+
+    /**
+     * Search for a path between two coordinates.
+     *
+     * @param start  The packed start coordinates.
+     * @param end    The packed end coordinates.
+     *
+     * @return  The path, including the start and end, or null if a path was not found.
+     */
+    @Nullable
+    public long[] search(long start, long end) {
+
+        reset(start);
+
+        while (!_open.isEmpty()) {
+
+            int current = _open.pop();
+            if (_closed[current])
+                continue;
+
+            _closed[current] = true;
+
+            if (_nodes[current] == end)
+                return buildPath(current);
+
+            if (!expand(current, end))
+                return null;
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the path costs from a coordinate to multiple target coordinates.
+     *
+     * @param start    The packed start coordinates.
+     * @param targets  The packed target coordinates.
+     * @param output   The output array to put the cost to each target into. A cost of
+     *                 -1 indicates the target could not be reached.
+     */
+    public void getCosts(long start, long[] targets, int[] output) {
+        PreCon.notNull(targets);
+        PreCon.notNull(output);
+        PreCon.isValid(output.length >= targets.length, "Output array is too small.");
+
+        Arrays.fill(output, 0, targets.length, -1);
+
+        PackedCoordsIndex targetIndex = new PackedCoordsIndex(targets.length);
+        for (int i=0; i < targets.length; i++)
+            targetIndex.putIfAbsent(targets[i], i);
+
+        int remaining = targetIndex.size();
+
+        reset(start);
+
+        while (!_open.isEmpty() && remaining > 0) {
+
+            int current = _open.pop();
+            if (_closed[current])
+                continue;
+
+            _closed[current] = true;
+
+            if (targetIndex.get(_nodes[current]) != -1) {
+                remaining--;
+
+                for (int i=0; i < targets.length; i++) {
+                    if (targets[i] == _nodes[current])
+                        output[i] = _costs[current];
+                }
+            }
+
+            if (!expand(current, start))
+                return;
+        }
+    }
+
+    /*
+     * Reset the search state and add the start node.
+     */
+    private void reset(long start) {
+        _index.clear();
+        _open.clear();
+        _nodeCount = 0;
+
+        addNode(start, 0, -1);
+        _open.push(0, 0);
+    }
+
+    /*
+     * Expand the neighbors of a node. Returns false if the node limit was reached.
+     * A goal equal to the start coordinates disables the heuristic.
+     */
+    private boolean expand(int node, long goal) {
+
+        long coords = _nodes[node];
+        int x = PackedCoords.getX(coords);
+        int y = PackedCoords.getY(coords);
+        int z = PackedCoords.getZ(coords);
+        boolean useHeuristic = goal != _nodes[0];
+
+        for (int i=0; i < DIRECTION_X.length; i++) {
+
+            int nx = x + DIRECTION_X[i];
+            int nz = z + DIRECTION_Z[i];
+
+            if (nx < _minX || nx > _maxX || nz < _minZ || nz > _maxZ)
+                continue;
+
+            boolean isDiagonal = i >= 4;
+            int ny;
+
+            if (isDiagonal) {
+                if (!PathWalkability.isWalkable(_view, nx, y, nz) ||
+                        !PathWalkability.isWalkable(_view, nx, y, z) ||
+                        !PathWalkability.isWalkable(_view, x, y, nz)) {
+                    continue;
+                }
+                ny = y;
+            }
+            else if (PathWalkability.isWalkable(_view, nx, y, nz)) {
+                ny = y;
+            }
+            else if (PathWalkability.isWalkable(_view, nx, y + 1, nz) &&
+                    PathWalkability.isPassable(_view.getType(x, y + 2, z))) {
+                ny = y + 1;
+            }
+            else if (PathWalkability.isWalkable(_view, nx, y - 1, nz) &&
+                    PathWalkability.isPassable(_view.getType(nx, y + 1, nz))) {
+                ny = y - 1;
+            }
+            else {
+                continue;
+            }
+
+            long neighbor = PackedCoords.pack(nx, ny, nz);
+            int cost = _costs[node] + (isDiagonal ? DIAGONAL_COST : STRAIGHT_COST);
+            int neighborNode = _index.get(neighbor);
+
+            if (neighborNode == -1) {
+
+                if (_nodeCount >= _maxNodes)
+                    return false;
+
+                neighborNode = addNode(neighbor, cost, node);
+            }
+            else if (_closed[neighborNode] || cost >= _costs[neighborNode]) {
+                continue;
+            }
+            else {
+                _costs[neighborNode] = cost;
+                _parents[neighborNode] = node;
+            }
+
+            _open.push(neighborNode, useHeuristic ? cost + estimate(neighbor, goal) : cost);
+        }
+
+        return true;
+    }
+
+    /*
+     * Add a node and return its index.
+     */
+    private int addNode(long coords, int cost, int parent) {
+
+        if (_nodeCount == _nodes.length) {
+            int size = _nodeCount * 2;
+            _nodes = Arrays.copyOf(_nodes, size);
+            _costs = Arrays.copyOf(_costs, size);
+            _parents = Arrays.copyOf(_parents, size);
+            _closed = Arrays.copyOf(_closed, size);
+        }
+
+        int node = _nodeCount++;
+
+        _nodes[node] = coords;
+        _costs[node] = cost;
+        _parents[node] = parent;
+        _closed[node] = false;
+        _index.put(coords, node);
+
+        return node;
+    }
+
+    /*
+     * Build the path that ends at a node.
+     */
+    private long[] buildPath(int node) {
+
+        int size = 0;
+        for (int i = node; i != -1; i = _parents[i])
+            size++;
+
+        long[] path = new long[size];
+        for (int i = node; i != -1; i = _parents[i])
+            path[--size] = _nodes[i];
+
+        return path;
+    }
+
+    /**
+     * Estimate the cost between two coordinates using octile distance.
+     *
+     * @param packed1  The first packed coordinates.
+     * @param packed2  The second packed coordinates.
+     */
+    public static int estimate(long packed1, long packed2) {
+        int dx = Math.abs(PackedCoords.getX(packed1) - PackedCoords.getX(packed2));
+        int dz = Math.abs(PackedCoords.getZ(packed1) - PackedCoords.getZ(packed2));
+
+        return STRAIGHT_COST * Math.max(dx, dz) +
+                (DIAGONAL_COST - STRAIGHT_COST) * Math.min(dx, dz);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import org.bukkit.Material;
+
+/**
+ * Read only view of block types used by path utilities.
+ */
+public interface IBlockView {
+
+    /**
+     * Get the max build height of the view.
+     */
+    int getMaxHeight();
+
+    /**
+     * Get the Y coordinate of the first air block above the highest
+     * non-air block in a column.
+     *
+     * @param x  The block X coordinate.
+     * @param z  The block Z coordinate.
+     */
+    int getHighestY(int x, int z);
+
+    /**
+     * Get the type of a block.
+     *
+     * @param x  The block X coordinate.
+     * @param y  The block Y coordinate.
+     * @param z  The block Z coordinate.
+     */
+    Material getType(int x, int y, int z);
+}
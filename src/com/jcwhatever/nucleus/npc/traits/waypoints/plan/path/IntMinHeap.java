@@ -0,0 +1,142 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of primitive int values ordered by primitive int keys.
+ *
+ * <p>Used as the open set of path searches.</p>
+ */
+public class IntMinHeap {
+
+    private int[] _values;
+    private int[] _keys;
+    private int _size;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity  The initial capacity.
+     */
+    public IntMinHeap(int capacity) {
+        _values = new int[Math.max(4, capacity)];
+        _keys = new int[_values.length];
+    }
+
+    /**
+     * Determine if the heap is empty.
+     */
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Get the number of values in the heap.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Remove all values.
+     */
+    public void clear() {
+        _size = 0;
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value  The value.
+     * @param key    The key the value is ordered by.
+     */
+    public void push(int value, int key) {
+
+        if (_size == _values.length) {
+            _values = Arrays.copyOf(_values, _size * 2);
+            _keys = Arrays.copyOf(_keys, _size * 2);
+        }
+
+        int index = _size++;
+
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+
+            if (_keys[parent] <= key)
+                break;
+
+            _values[index] = _values[parent];
+            _keys[index] = _keys[parent];
+            index = parent;
+        }
+
+        _values[index] = value;
+        _keys[index] = key;
+    }
+
+    /**
+     * Remove and return the value with the lowest key.
+     *
+     * @throws IllegalStateException if the heap is empty.
+     */
+    public int pop() {
+
+        if (_size == 0)
+            throw new IllegalStateException("Heap is empty.");
+
+        int result = _values[0];
+
+        _size--;
+
+        if (_size > 0) {
+            int value = _values[_size];
+            int key = _keys[_size];
+            int index = 0;
+
+            while (true) {
+                int child = index * 2 + 1;
+                if (child >= _size)
+                    break;
+
+                if (child + 1 < _size && _keys[child + 1] < _keys[child])
+                    child++;
+
+                if (_keys[child] >= key)
+                    break;
+
+                _values[index] = _values[child];
+                _keys[index] = _keys[child];
+                index = child;
+            }
+
+            _values[index] = value;
+            _keys[index] = key;
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.nucleus.utils.coords.Coords3Di;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * Static utilities for packing block coordinates into a single primitive long.
+ *
+ * <p>X and Z coordinates use 26 bits each and the Y coordinate uses 12 bits,
+ * which covers the full range of a Minecraft world.</p>
+ */
+public final class PackedCoords {
+
+    private PackedCoords() {}
+
+    private static final long XZ_MASK = 0x3FFFFFFL;
+    private static final long Y_MASK = 0xFFFL;
+
+    /**
+     * Pack block coordinates.
+     *
+     * @param x  The X coordinate.
+     * @param y  The Y coordinate.
+     * @param z  The Z coordinate.
+     */
+    public static long pack(int x, int y, int z) {
+        return ((x & XZ_MASK) << 38) | ((z & XZ_MASK) << 12) | (y & Y_MASK);
+    }
+
+    /**
+     * Pack the block coordinates of a location.
+     *
+     * @param location  The location.
+     */
+    public static long pack(Location location) {
+        PreCon.notNull(location);
+
+        return pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Get the X coordinate from packed coordinates.
+     *
+     * @param packed  The packed coordinates.
+     */
+    public static int getX(long packed) {
+        return (int)(packed >> 38);
+    }
+
+    /**
+     * Get the Y coordinate from packed coordinates.
+     *
+     * @param packed  The packed coordinates.
+     */
+    public static int getY(long packed) {
+        return (int)(packed << 52 >> 52);
+    }
+
+    /**
+     * Get the Z coordinate from packed coordinates.
+     *
+     * @param packed  The packed coordinates.
+     */
+    public static int getZ(long packed) {
+        return (int)(packed << 26 >> 38);
+    }
+
+    /**
+     * Get the X coordinate of the chunk that packed coordinates are in.
+     *
+     * @param packed  The packed coordinates.
+     */
+    public static int getChunkX(long packed) {
+        return getX(packed) >> 4;
+    }
+
+    /**
+     * Get the Z coordinate of the chunk that packed coordinates are in.
+     *
+     * @param packed  The packed coordinates.
+     */
+    public static int getChunkZ(long packed) {
+        return getZ(packed) >> 4;
+    }
+
+    /**
+     * Create a new {@link Coords3Di} from packed coordinates.
+     *
+     * @param packed  The packed coordinates.
+     */
+    public static Coords3Di toCoords(long packed) {
+        return new Coords3Di(getX(packed), getY(packed), getZ(packed));
+    }
+
+    /**
+     * Copy packed coordinates into a location.
+     *
+     * @param packed  The packed coordinates.
+     * @param world   The world to set on the location.
+     * @param output  The output location.
+     *
+     * @return  The output location.
+     */
+    public static Location toLocation(long packed, World world, Location output) {
+        PreCon.notNull(output);
+
+        output.setWorld(world);
+        output.setX(getX(packed));
+        output.setY(getY(packed));
+        output.setZ(getZ(packed));
+        output.setYaw(0);
+        output.setPitch(0);
+        return output;
+    }
+
+    /**
+     * Get the squared distance between two packed coordinates.
+     *
+     * @param packed1  The first packed coordinates.
+     * @param packed2  The second packed coordinates.
+     */
+    public static double distanceSquared(long packed1, long packed2) {
+        double dx = getX(packed1) - getX(packed2);
+        double dy = getY(packed1) - getY(packed2);
+        double dz = getZ(packed1) - getZ(packed2);
+
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -0,0 +1,429 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
+
+/**
+ * Hash map keyed by a pair of primitive longs, such as packed start and end
+ * coordinates (see {@link PackedCoords}), that keeps its entries in access order.
+ *
+ * <p>Entries are stored in parallel arrays and chained in hash buckets using
+ * entry indexes so no objects are allocated per entry. Iteration starts at the
+ * least recently accessed entry. Accessing an entry while iterating is a
+ * modification.</p>
+ *
+ * <p>Not thread safe.</p>
+ *
+ * @param <V>  The value type.
+ */
+public class PackedPairMap<V> implements Iterable<V> {
+
+    private static final int NONE = -1;
+
+    private int[] _buckets;
+    private int _mask;
+
+    // entries
+    private long[] _keys1;
+    private long[] _keys2;
+    private Object[] _values;
+    private int[] _next;
+    private int[] _before;
+    private int[] _after;
+
+    private int _eldest = NONE;
+    private int _youngest = NONE;
+    private int _free = NONE;
+    private int _used;
+    private int _size;
+    private int _modCount;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity  The initial capacity.
+     */
+    public PackedPairMap(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(4, capacity) * 2 - 1);
+
+        _buckets = new int[tableSize];
+        _mask = tableSize - 1;
+        Arrays.fill(_buckets, NONE);
+
+        _keys1 = new long[tableSize];
+        _keys2 = new long[tableSize];
+        _values = new Object[tableSize];
+        _next = new int[tableSize];
+        _before = new int[tableSize];
+        _after = new int[tableSize];
+    }
+
+    /**
+     * Get the number of entries.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Determine if the map has no entries.
+     */
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Determine if the map contains a key without changing its access order.
+     *
+     * @param key1  The first key.
+     * @param key2  The second key.
+     */
+    public boolean containsKey(long key1, long key2) {
+        return find(key1, key2) != NONE;
+    }
+
+    /**
+     * Get a value and mark it as the most recently accessed.
+     *
+     * @param key1  The first key.
+     * @param key2  The second key.
+     *
+     * @return  The value or null if not found.
+     */
+    @Nullable
+    public V get(long key1, long key2) {
+
+        int entry = find(key1, key2);
+        if (entry == NONE)
+            return null;
+
+        moveToYoungest(entry);
+
+        @SuppressWarnings("unchecked")
+        V value = (V)_values[entry];
+
+        return value;
+    }
+
+    /**
+     * Get a value without changing its access order.
+     *
+     * @param key1  The first key.
+     * @param key2  The second key.
+     *
+     * @return  The value or null if not found.
+     */
+    @Nullable
+    public V peek(long key1, long key2) {
+
+        int entry = find(key1, key2);
+        if (entry == NONE)
+            return null;
+
+        @SuppressWarnings("unchecked")
+        V value = (V)_values[entry];
+
+        return value;
+    }
+
+    /**
+     * Put a value and mark it as the most recently accessed.
+     *
+     * @param key1   The first key.
+     * @param key2   The second key.
+     * @param value  The value.
+     *
+     * @return  The previous value or null if there was none.
+     */
+    @Nullable
+    public V put(long key1, long key2, V value) {
+
+        int entry = find(key1, key2);
+        if (entry != NONE) {
+
+            @SuppressWarnings("unchecked")
+            V previous = (V)_values[entry];
+
+            _values[entry] = value;
+            moveToYoungest(entry);
+            return previous;
+        }
+
+        if (_free == NONE && _used == _keys1.length)
+            grow();
+
+        if (_free != NONE) {
+            entry = _free;
+            _free = _next[entry];
+        }
+        else {
+            entry = _used++;
+        }
+
+        int bucket = hash(key1, key2) & _mask;
+
+        _keys1[entry] = key1;
+        _keys2[entry] = key2;
+        _values[entry] = value;
+        _next[entry] = _buckets[bucket];
+        _buckets[bucket] = entry;
+
+        _before[entry] = _youngest;
+        _after[entry] = NONE;
+
+        if (_youngest != NONE)
+            _after[_youngest] = entry;
+        else
+            _eldest = entry;
+
+        _youngest = entry;
+        _size++;
+        _modCount++;
+
+        return null;
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param key1  The first key.
+     * @param key2  The second key.
+     *
+     * @return  The removed value or null if not found.
+     */
+    @Nullable
+    public V remove(long key1, long key2) {
+
+        int entry = find(key1, key2);
+        if (entry == NONE)
+            return null;
+
+        @SuppressWarnings("unchecked")
+        V value = (V)_values[entry];
+
+        removeEntry(entry);
+
+        return value;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        Arrays.fill(_buckets, NONE);
+        Arrays.fill(_values, null);
+
+        _eldest = NONE;
+        _youngest = NONE;
+        _free = NONE;
+        _used = 0;
+        _size = 0;
+        _modCount++;
+    }
+
+    /**
+     * Get an iterator of the values starting at the least recently accessed.
+     *
+     * <p>The iterator supports removal.</p>
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new ValueIterator();
+    }
+
+    /**
+     * Hash a pair of keys.
+     *
+     * <p>The keys are mixed so that swapped keys and permutations of coordinates
+     * do not collide.</p>
+     *
+     * @param key1  The first key.
+     * @param key2  The second key.
+     */
+    public static int hash(long key1, long key2) {
+        return PackedCoordsIndex.mix(key1 * 0x9E3779B97F4A7C15L + key2);
+    }
+
+    /*
+     * Find the index of an entry or NONE if not found.
+     */
+    private int find(long key1, long key2) {
+
+        int entry = _buckets[hash(key1, key2) & _mask];
+
+        while (entry != NONE) {
+            if (_keys1[entry] == key1 && _keys2[entry] == key2)
+                return entry;
+
+            entry = _next[entry];
+        }
+
+        return NONE;
+    }
+
+    /*
+     * Remove an entry by index.
+     */
+    private void removeEntry(int entry) {
+
+        // unlink from bucket chain
+        int bucket = hash(_keys1[entry], _keys2[entry]) & _mask;
+        int current = _buckets[bucket];
+        int previous = NONE;
+
+        while (current != entry) {
+            previous = current;
+            current = _next[current];
+        }
+
+        if (previous == NONE)
+            _buckets[bucket] = _next[entry];
+        else
+            _next[previous] = _next[entry];
+
+        unlinkOrder(entry);
+
+        _values[entry] = null;
+        _next[entry] = _free;
+        _free = entry;
+        _size--;
+        _modCount++;
+    }
+
+    /*
+     * Move an entry to the most recently accessed position.
+     */
+    private void moveToYoungest(int entry) {
+
+        if (entry == _youngest)
+            return;
+
+        unlinkOrder(entry);
+
+        _before[entry] = _youngest;
+        _after[entry] = NONE;
+        _after[_youngest] = entry;
+        _youngest = entry;
+        _modCount++;
+    }
+
+    /*
+     * Remove an entry from the access order.
+     */
+    private void unlinkOrder(int entry) {
+
+        int before = _before[entry];
+        int after = _after[entry];
+
+        if (before != NONE)
+            _after[before] = after;
+        else
+            _eldest = after;
+
+        if (after != NONE)
+            _before[after] = before;
+        else
+            _youngest = before;
+    }
+
+    /*
+     * Double the entry and bucket capacity.
+     */
+    private void grow() {
+
+        int capacity = _keys1.length * 2;
+
+        _keys1 = Arrays.copyOf(_keys1, capacity);
+        _keys2 = Arrays.copyOf(_keys2, capacity);
+        _values = Arrays.copyOf(_values, capacity);
+        _next = Arrays.copyOf(_next, capacity);
+        _before = Arrays.copyOf(_before, capacity);
+        _after = Arrays.copyOf(_after, capacity);
+
+        _buckets = new int[capacity];
+        _mask = capacity - 1;
+        Arrays.fill(_buckets, NONE);
+
+        // the free list is always empty when growing so only entries in use are re-chained.
+        for (int entry = _eldest; entry != NONE; entry = _after[entry]) {
+            int bucket = hash(_keys1[entry], _keys2[entry]) & _mask;
+
+            _next[entry] = _buckets[bucket];
+            _buckets[bucket] = entry;
+        }
+    }
+
+    /*
+     * Value iterator in access order.
+     */
+    private class ValueIterator implements Iterator<V> {
+
+        int next = _eldest;
+        int current = NONE;
+        int expectedModCount = _modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next != NONE;
+        }
+
+        @Override
+        public V next() {
+
+            if (expectedModCount != _modCount)
+                throw new ConcurrentModificationException();
+
+            if (next == NONE)
+                throw new NoSuchElementException();
+
+            current = next;
+            next = _after[current];
+
+            @SuppressWarnings("unchecked")
+            V value = (V)_values[current];
+
+            return value;
+        }
+
+        @Override
+        public void remove() {
+
+            if (current == NONE)
+                throw new IllegalStateException();
+
+            if (expectedModCount != _modCount)
+                throw new ConcurrentModificationException();
+
+            removeEntry(current);
+            current = NONE;
+            expectedModCount = _modCount;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import java.util.Arrays;
+
+/**
+ * Immutable run of path coordinates.
+ *
+ * <p>Segments are interned by a {@link PathSegmentStore} so identical runs of
+ * coordinates in different paths share a single instance.</p>
+ *
+ * <p>Only the packed coordinates and the total length are stored. Distances to
+ * coordinates within the segment are computed when requested by walking the
+ * segment, which is short since paths are split into segments at chunk edges.</p>
+ */
+public final class PathSegment {
+
+    private final long[] _nodes;
+    private final double _length;
+    private final int _hash;
+
+    /**
+     * Constructor.
+     *
+     * @param nodes  The packed coordinates. See {@link PackedCoords}. The array is copied.
+     * @param from   The index of the first coordinate to copy.
+     * @param to     The index after the last coordinate to copy.
+     */
+    PathSegment(long[] nodes, int from, int to) {
+        PreCon.notNull(nodes);
+        PreCon.isValid(to > from, "Segment cannot be empty.");
+
+        _nodes = Arrays.copyOfRange(nodes, from, to);
+        _length = getDistance(_nodes.length - 1);
+        _hash = Arrays.hashCode(_nodes);
+    }
+
+    /**
+     * Get the number of coordinates in the segment.
+     */
+    public int size() {
+        return _nodes.length;
+    }
+
+    /**
+     * Get packed coordinates.
+     *
+     * @param index  The index of the coordinates in the segment.
+     */
+    public long getNode(int index) {
+        return _nodes[index];
+    }
+
+    /**
+     * Get the straight line distance along the segment from the first
+     * coordinates to the coordinates at an index.
+     *
+     * @param index  The index of the coordinates in the segment.
+     */
+    public double getDistance(int index) {
+
+        if (index < 0 || index >= _nodes.length)
+            throw new IndexOutOfBoundsException("Segment index out of bounds: " + index);
+
+        double distance = 0;
+
+        for (int i=1; i <= index; i++) {
+            distance += getStepLength(i);
+        }
+
+        return distance;
+    }
+
+    /**
+     * Get the straight line distance from the first to the last coordinates.
+     */
+    public double getLength() {
+        return _length;
+    }
+
+    /**
+     * Get the index of the last coordinates at or before a distance along the segment.
+     *
+     * @param distance  The distance from the first coordinates.
+     */
+    public int getIndexAt(double distance) {
+
+        if (distance >= _length)
+            return _nodes.length - 1;
+
+        double current = 0;
+
+        for (int i=1; i < _nodes.length; i++) {
+
+            current += getStepLength(i);
+
+            if (current > distance)
+                return i - 1;
+        }
+
+        return _nodes.length - 1;
+    }
+
+    /*
+     * Get the straight line distance from the coordinates before an index
+     * to the coordinates at the index.
+     */
+    private double getStepLength(int index) {
+        return Math.sqrt(PackedCoords.distanceSquared(_nodes[index - 1], _nodes[index]));
+    }
+
+    @Override
+    public int hashCode() {
+        return _hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this ||
+                obj instanceof PathSegment &&
+                        ((PathSegment) obj)._hash == _hash &&
+                        Arrays.equals(((PathSegment) obj)._nodes, _nodes);
+    }
+}
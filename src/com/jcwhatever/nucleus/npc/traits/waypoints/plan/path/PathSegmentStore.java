@@ -0,0 +1,127 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.WeakHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Interns {@link PathSegment}'s so paths that share the same coordinates share
+ * the same segment instances.
+ *
+ * <p>Paths are split into segments where they enter a different chunk so overlapping
+ * paths produce identical segments along the part they share. Segments are weakly held
+ * and are released when no path uses them.</p>
+ *
+ * <p>Not thread safe.</p>
+ */
+public class PathSegmentStore {
+
+    private final WeakHashMap<PathSegment, WeakReference<PathSegment>> _segments = new WeakHashMap<>(100);
+
+    /**
+     * Get the number of interned segments.
+     */
+    public int size() {
+        return _segments.size();
+    }
+
+    /**
+     * Get the interned segment of a range of packed coordinates.
+     *
+     * @param nodes  The packed coordinates. See {@link PackedCoords}.
+     * @param from   The index of the first coordinates in the segment.
+     * @param to     The index after the last coordinates in the segment.
+     */
+    public PathSegment intern(long[] nodes, int from, int to) {
+        PreCon.notNull(nodes);
+
+        PathSegment segment = new PathSegment(nodes, from, to);
+
+        WeakReference<PathSegment> reference = _segments.get(segment);
+        PathSegment interned = reference != null ? reference.get() : null;
+
+        if (interned != null)
+            return interned;
+
+        _segments.put(segment, new WeakReference<>(segment));
+        return segment;
+    }
+
+    /**
+     * Split packed coordinates into interned segments where the coordinates
+     * enter a different chunk.
+     *
+     * @param nodes  The packed coordinates.
+     *
+     * @return  The segments.
+     */
+    public List<PathSegment> split(long[] nodes) {
+        PreCon.notNull(nodes);
+
+        List<PathSegment> segments = new ArrayList<>(5);
+        int start = 0;
+
+        for (int i=1; i <= nodes.length; i++) {
+
+            if (i == nodes.length ||
+                    PackedCoords.getChunkX(nodes[i]) != PackedCoords.getChunkX(nodes[i - 1]) ||
+                    PackedCoords.getChunkZ(nodes[i]) != PackedCoords.getChunkZ(nodes[i - 1])) {
+
+                segments.add(intern(nodes, start, i));
+                start = i;
+            }
+        }
+
+        return segments;
+    }
+
+    /**
+     * Get the interned segment of a segment without its first coordinates.
+     *
+     * @param segment  The segment.
+     *
+     * @return  The segment or null if the segment only has 1 coordinate.
+     */
+    @Nullable
+    public PathSegment tail(PathSegment segment) {
+        PreCon.notNull(segment);
+
+        if (segment.size() < 2)
+            return null;
+
+        long[] nodes = new long[segment.size()];
+        for (int i=0; i < nodes.length; i++) {
+            nodes[i] = segment.getNode(i);
+        }
+
+        return intern(nodes, 1, nodes.length);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import java.util.Arrays;
+
+/**
+ * Removes intermediate path points that can be skipped by walking
+ * in a straight line.
+ */
+public final class PathSmoother {
+
+    private PathSmoother() {}
+
+    /**
+     * The max number of original path steps a single smoothed segment can replace.
+     */
+    public static final int MAX_SEGMENT_STEPS = 16;
+
+    /**
+     * Smooth a path of packed coordinates.
+     *
+     * <p>The first and last coordinates are always kept. An intermediate coordinate
+     * is dropped when the line between the previous kept coordinate and the next
+     * coordinate is walkable.</p>
+     *
+     * @param view  The block view used to check walkability.
+     * @param path  The path of packed coordinates. See {@link PackedCoords}.
+     *
+     * @return  A new smoothed path or the same array if nothing was dropped.
+     */
+    public static long[] smooth(IBlockView view, long[] path) {
+        PreCon.notNull(view);
+        PreCon.notNull(path);
+
+        if (path.length < 3)
+            return path;
+
+        long[] result = new long[path.length];
+        int size = 0;
+        int anchor = 0;
+
+        result[size++] = path[0];
+
+        while (anchor < path.length - 1) {
+
+            int next = anchor + 1;
+
+            while (next + 1 < path.length &&
+                    next + 1 - anchor <= MAX_SEGMENT_STEPS &&
+                    PathWalkability.isLineWalkable(view, path[anchor], path[next + 1])) {
+                next++;
+            }
+
+            result[size++] = path[next];
+            anchor = next;
+        }
+
+        return size == path.length
+                ? path
+                : Arrays.copyOf(result, size);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import org.bukkit.Material;
+
+/**
+ * Static utilities to determine if an entity can stand at and walk
+ * between block coordinates.
+ */
+public final class PathWalkability {
+
+    private PathWalkability() {}
+
+    /**
+     * Determine if an entity can stand at block coordinates.
+     *
+     * <p>The block below must be solid and the block at the coordinates
+     * and the block above must be passable.</p>
+     *
+     * @param view  The block view.
+     * @param x     The X coordinate.
+     * @param y     The Y coordinate.
+     * @param z     The Z coordinate.
+     */
+    public static boolean isWalkable(IBlockView view, int x, int y, int z) {
+        PreCon.notNull(view);
+
+        if (y < 1 || y + 1 >= view.getMaxHeight())
+            return false;
+
+        return view.getType(x, y - 1, z).isSolid() &&
+                isPassable(view.getType(x, y, z)) &&
+                isPassable(view.getType(x, y + 1, z));
+    }
+
+    /**
+     * Determine if an entity can pass through a block type.
+     *
+     * @param material  The block type.
+     */
+    public static boolean isPassable(Material material) {
+        PreCon.notNull(material);
+
+        if (material.isSolid())
+            return false;
+
+        switch (material) {
+            case WATER:
+            case STATIONARY_WATER:
+            case LAVA:
+            case STATIONARY_LAVA:
+            case FIRE:
+            case WEB:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Determine if an entity can walk in a straight line between two coordinates
+     * at the same height.
+     *
+     * <p>Every block column touched by the line is checked, including both columns
+     * next to a corner the line passes exactly through.</p>
+     *
+     * @param view     The block view.
+     * @param packed1  The packed start coordinates. See {@link PackedCoords}.
+     * @param packed2  The packed end coordinates.
+     *
+     * @return  True if the line is walkable, false if it is not or the heights differ.
+     */
+    public static boolean isLineWalkable(IBlockView view, long packed1, long packed2) {
+        PreCon.notNull(view);
+
+        int y = PackedCoords.getY(packed1);
+        if (y != PackedCoords.getY(packed2))
+            return false;
+
+        int x = PackedCoords.getX(packed1);
+        int z = PackedCoords.getZ(packed1);
+        int endX = PackedCoords.getX(packed2);
+        int endZ = PackedCoords.getZ(packed2);
+
+        int dx = Math.abs(endX - x);
+        int dz = Math.abs(endZ - z);
+        int stepX = endX > x ? 1 : -1;
+        int stepZ = endZ > z ? 1 : -1;
+        int error = dx - dz;
+        int steps = dx + dz;
+
+        dx *= 2;
+        dz *= 2;
+
+        while (steps > 0) {
+
+            if (error > 0) {
+                x += stepX;
+                error -= dz;
+            }
+            else if (error < 0) {
+                z += stepZ;
+                error += dx;
+            }
+            else {
+                // line passes exactly through a corner
+                if (!isWalkable(view, x + stepX, y, z) || !isWalkable(view, x, y, z + stepZ))
+                    return false;
+
+                x += stepX;
+                z += stepZ;
+                error += dx - dz;
+                steps--;
+            }
+
+            steps--;
+
+            if (!isWalkable(view, x, y, z))
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import java.util.List;
+
+/**
+ * Immutable path made of a sequence of shared {@link PathSegment}'s.
+ *
+ * <p>The path only holds references to its segments and an offset and distance for
+ * each segment, so its memory cost is proportional to the number of segments rather
+ * than the number of coordinates.</p>
+ */
+public final class SegmentedPath {
+
+    private final PathSegment[] _segments;
+
+    // path index of the first coordinates of each segment
+    private final int[] _offsets;
+
+    // distance along the path to the first coordinates of each segment
+    private final double[] _distances;
+
+    private final int _size;
+
+    /**
+     * Constructor.
+     *
+     * @param segments  The segments that make up the path, in order.
+     */
+    public SegmentedPath(List<PathSegment> segments) {
+        PreCon.notNull(segments);
+
+        _segments = segments.toArray(new PathSegment[segments.size()]);
+        _offsets = new int[_segments.length];
+        _distances = new double[_segments.length];
+
+        int size = 0;
+
+        for (int i=0; i < _segments.length; i++) {
+            _offsets[i] = size;
+
+            if (i > 0) {
+                PathSegment previous = _segments[i - 1];
+
+                _distances[i] = _distances[i - 1] + previous.getLength() +
+                        Math.sqrt(PackedCoords.distanceSquared(
+                                previous.getNode(previous.size() - 1), _segments[i].getNode(0)));
+            }
+
+            size += _segments[i].size();
+        }
+
+        _size = size;
+    }
+
+    /**
+     * Get the number of coordinates in the path.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Get the number of segments in the path.
+     */
+    public int getSegmentCount() {
+        return _segments.length;
+    }
+
+    /**
+     * Get a segment.
+     *
+     * @param index  The index of the segment.
+     */
+    public PathSegment getSegment(int index) {
+        return _segments[index];
+    }
+
+    /**
+     * Get the path index of the first coordinates of a segment.
+     *
+     * @param index  The index of the segment.
+     */
+    public int getSegmentOffset(int index) {
+        return _offsets[index];
+    }
+
+    /**
+     * Get packed coordinates.
+     *
+     * @param pathIndex  The index of the coordinates in the path.
+     */
+    public long getNode(int pathIndex) {
+
+        if (pathIndex < 0 || pathIndex >= _size)
+            throw new IndexOutOfBoundsException("Path index out of bounds: " + pathIndex);
+
+        int segment = getSegmentIndex(pathIndex);
+
+        return _segments[segment].getNode(pathIndex - _offsets[segment]);
+    }
+
+    /**
+     * Get the straight line distance along the path from the first coordinates
+     * to the coordinates at a path index.
+     *
+     * @param pathIndex  The index of the coordinates in the path.
+     */
+    public double getDistance(int pathIndex) {
+
+        int segment = getSegmentIndex(pathIndex);
+
+        return _distances[segment] + _segments[segment].getDistance(pathIndex - _offsets[segment]);
+    }
+
+    /**
+     * Get the straight line distance along the whole path.
+     */
+    public double getLength() {
+        return _size == 0 ? 0 : getDistance(_size - 1);
+    }
+
+    /**
+     * Get the index of the last coordinates at or before a distance along the path.
+     *
+     * @param distance  The distance along the path.
+     *
+     * @return  The path index or -1 if the path is empty.
+     */
+    public int getPathIndexAt(double distance) {
+
+        if (_size == 0)
+            return -1;
+
+        // find the last segment that starts at or before the distance.
+        int low = 0;
+        int high = _distances.length - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (_distances[mid] <= distance)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+
+        return _offsets[low] + _segments[low].getIndexAt(distance - _distances[low]);
+    }
+
+    /**
+     * Get the index of the segment that contains a path index.
+     *
+     * @param pathIndex  The index of the coordinates in the path.
+     */
+    public int getSegmentIndex(int pathIndex) {
+
+        int low = 0;
+        int high = _offsets.length - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (_offsets[mid] <= pathIndex)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+
+        return low;
+    }
+}
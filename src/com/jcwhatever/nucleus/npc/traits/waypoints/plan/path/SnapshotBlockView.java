@@ -0,0 +1,104 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+
+import java.util.Map;
+
+/**
+ * {@link IBlockView} of a set of chunk snapshots.
+ *
+ * <p>Snapshots are immutable so the view can be read from any thread. Blocks in
+ * chunks that are not in the view are treated as solid.</p>
+ */
+public class SnapshotBlockView implements IBlockView {
+
+    private final Map<Long, ChunkSnapshot> _snapshots;
+    private final int _maxHeight;
+
+    /**
+     * Constructor.
+     *
+     * @param snapshots  Chunk snapshots keyed by chunk key. See {@link #getKey}.
+     *                   The map is not copied and must not be modified while
+     *                   the view is in use.
+     * @param maxHeight  The max build height of the world the snapshots are from.
+     */
+    public SnapshotBlockView(Map<Long, ChunkSnapshot> snapshots, int maxHeight) {
+        PreCon.notNull(snapshots);
+        PreCon.greaterThanZero(maxHeight);
+
+        _snapshots = snapshots;
+        _maxHeight = maxHeight;
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return _maxHeight;
+    }
+
+    @Override
+    public int getHighestY(int x, int z) {
+
+        ChunkSnapshot snapshot = _snapshots.get(getKey(x >> 4, z >> 4));
+        if (snapshot == null)
+            return 0;
+
+        return snapshot.getHighestBlockYAt(x & 15, z & 15);
+    }
+
+    @Override
+    public Material getType(int x, int y, int z) {
+
+        if (y < 0)
+            return Material.BEDROCK;
+
+        if (y >= _maxHeight)
+            return Material.AIR;
+
+        ChunkSnapshot snapshot = _snapshots.get(getKey(x >> 4, z >> 4));
+        if (snapshot == null)
+            return Material.STONE;
+
+        @SuppressWarnings("deprecation")
+        Material material = Material.getMaterial(snapshot.getBlockTypeId(x & 15, y, z & 15));
+
+        return material != null ? material : Material.AIR;
+    }
+
+    /**
+     * Get the key of a chunk.
+     *
+     * @param chunkX  The chunk X coordinate.
+     * @param chunkZ  The chunk Z coordinate.
+     */
+    public static long getKey(int chunkX, int chunkZ) {
+        return ((long)chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.plan.path;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+
+/**
+ * {@link IBlockView} of a {@link org.bukkit.World}.
+ *
+ * <p>Reads blocks directly from the world so it should only be used
+ * on the main thread.</p>
+ */
+public class WorldBlockView implements IBlockView {
+
+    private final World _world;
+
+    /**
+     * Constructor.
+     *
+     * @param world  The world to view.
+     */
+    public WorldBlockView(World world) {
+        PreCon.notNull(world);
+
+        _world = world;
+    }
+
+    /**
+     * Get the world.
+     */
+    public World getWorld() {
+        return _world;
+    }
+
+    @Override
+    public int getMaxHeight() {
+        return _world.getMaxHeight();
+    }
+
+    @Override
+    public int getHighestY(int x, int z) {
+        return _world.getHighestBlockYAt(x, z);
+    }
+
+    @Override
+    public Material getType(int x, int y, int z) {
+        return _world.getBlockAt(x, y, z).getType();
+    }
+}
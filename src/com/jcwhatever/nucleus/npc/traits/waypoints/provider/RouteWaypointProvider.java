@@ -0,0 +1,130 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.provider;
+
+import com.jcwhatever.nucleus.npc.traits.waypoints.route.WaypointRoute;
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import org.bukkit.Location;
+
+import javax.annotation.Nullable;
+
+/**
+ * {@link IWaypointProvider} implementation that provides the waypoints of a
+ * shared {@link WaypointRoute}.
+ *
+ * <p>The provider only holds a cursor into the route. The phase offset is the
+ * index of the first waypoint provided, allowing NPC's on the same route to start
+ * at different waypoints. If the route loops, the cursor wraps back to the first
+ * waypoint until the provider is reset.</p>
+ */
+public class RouteWaypointProvider implements IWaypointProvider {
+
+    private final WaypointRoute _route;
+    private final int _phaseOffset;
+    private int _cursor;
+    private int _current = -1;
+    private boolean _isReset;
+
+    /**
+     * Constructor.
+     *
+     * @param route        The route.
+     * @param phaseOffset  The index of the first waypoint to provide.
+     */
+    public RouteWaypointProvider(WaypointRoute route, int phaseOffset) {
+        PreCon.notNull(route);
+        PreCon.positiveNumber(phaseOffset);
+        PreCon.isValid(phaseOffset < route.size(), "Phase offset is out of range.");
+
+        _route = route;
+        _phaseOffset = phaseOffset;
+        _cursor = phaseOffset;
+    }
+
+    /**
+     * Get the route.
+     */
+    public WaypointRoute getRoute() {
+        return _route;
+    }
+
+    /**
+     * Get the index of the first waypoint provided.
+     */
+    public int getPhaseOffset() {
+        return _phaseOffset;
+    }
+
+    /**
+     * Get the number of waypoints left to provide.
+     *
+     * <p>A looping route that is not reset always has all of its waypoints left.</p>
+     */
+    public int size() {
+        if (_isReset)
+            return 0;
+
+        return _route.isLoop()
+                ? _route.size()
+                : _route.size() - _cursor;
+    }
+
+    @Override
+    public void reset() {
+        _isReset = true;
+        _current = -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !_isReset && (_route.isLoop() || _cursor < _route.size());
+    }
+
+    @Override
+    @Nullable
+    public Location next(Location output) {
+        PreCon.notNull(output);
+
+        if (!hasNext())
+            return null;
+
+        _current = _cursor;
+        _cursor = _route.isLoop()
+                ? (_cursor + 1) % _route.size()
+                : _cursor + 1;
+
+        return _route.getWaypoint(_current, output);
+    }
+
+    @Override
+    @Nullable
+    public Location getCurrent(Location output) {
+        if (_current == -1)
+            return null;
+
+        return _route.getWaypoint(_current, output);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.route;
+
+import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.npc.traits.waypoints.plan.WaypointPath;
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.nucleus.utils.coords.LocationUtils;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable named sequence of waypoints that can be shared by many NPC's.
+ *
+ * <p>The planned path through the waypoints is created the first time it is
+ * requested and is shared by all NPC's that use the route.</p>
+ *
+ * <p>A looping route includes the path from the last waypoint back to the first.</p>
+ *
+ * <p>Use {@link WaypointRouteRegistry} to create instances.</p>
+ */
+public final class WaypointRoute {
+
+    private final String _name;
+    private final World _world;
+    private final Location[] _waypoints;
+    private final boolean _isLoop;
+
+    private WaypointPath _path;
+
+    /**
+     * Constructor.
+     *
+     * @param name       The name of the route.
+     * @param waypoints  The waypoints. Must contain at least 2 waypoints in the same world.
+     * @param isLoop     True if the route loops back to the first waypoint.
+     */
+    WaypointRoute(String name, Collection<Location> waypoints, boolean isLoop) {
+        PreCon.notNullOrEmpty(name);
+        PreCon.notNull(waypoints);
+        PreCon.isValid(waypoints.size() > 1, "A route requires at least 2 waypoints.");
+
+        _name = name;
+        _isLoop = isLoop;
+        _waypoints = new Location[waypoints.size()];
+
+        World world = null;
+        int index = 0;
+
+        for (Location location : waypoints) {
+
+            if (world == null)
+                world = location.getWorld();
+
+            PreCon.isValid(location.getWorld() != null && location.getWorld().equals(world),
+                    "All route waypoints must be in the same world.");
+
+            _waypoints[index++] = LocationUtils.copy(location);
+        }
+
+        _world = world;
+    }
+
+    /**
+     * Get the name of the route.
+     */
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * Get the world the route is in.
+     */
+    public World getWorld() {
+        return _world;
+    }
+
+    /**
+     * Determine if the route loops back to the first waypoint.
+     */
+    public boolean isLoop() {
+        return _isLoop;
+    }
+
+    /**
+     * Get the number of waypoints in the route.
+     */
+    public int size() {
+        return _waypoints.length;
+    }
+
+    /**
+     * Get a waypoint.
+     *
+     * @param index   The index of the waypoint.
+     * @param output  The output location to put the waypoint values into.
+     *
+     * @return  The output location.
+     */
+    public Location getWaypoint(int index, Location output) {
+        PreCon.notNull(output);
+
+        return LocationUtils.copy(_waypoints[index], output);
+    }
+
+    /**
+     * Get all waypoints in the route.
+     *
+     * @param output  The output collection to add copies of the waypoints to.
+     *
+     * @return  The output collection.
+     */
+    public <T extends Collection<Location>> T getWaypoints(T output) {
+        PreCon.notNull(output);
+
+        for (Location location : _waypoints) {
+            output.add(LocationUtils.copy(location));
+        }
+
+        return output;
+    }
+
+    /**
+     * Get the waypoints the route path passes through.
+     *
+     * <p>If the route loops, the first waypoint is added again at the end.</p>
+     *
+     * @param output  The output collection to add copies of the waypoints to.
+     *
+     * @return  The output collection.
+     */
+    public <T extends Collection<Location>> T getPathWaypoints(T output) {
+        PreCon.notNull(output);
+
+        getWaypoints(output);
+
+        if (_isLoop)
+            output.add(LocationUtils.copy(_waypoints[0]));
+
+        return output;
+    }
+
+    /**
+     * Get the shared planned path through the route waypoints.
+     *
+     * <p>The path is planned the first time it is requested and is updated if the
+     * path of one of its waypoint pairs is repaired after a block change. If the
+     * path cannot be updated, the previous path is kept.</p>
+     *
+     * @throws RuntimeException if a path could not be found between a pair of waypoints.
+     */
+    public WaypointPath getPath() {
+
+        if (_path == null) {
+
+            List<Location> waypoints = getPathWaypoints(new ArrayList<Location>(_waypoints.length + 1));
+
+            _path = NpcTraitPack.getWaypointPairFactory().getPath(_world, waypoints, true);
+        }
+        else if (_path.isStale()) {
+            _path = NpcTraitPack.getWaypointPairFactory().refresh(_path, true);
+        }
+
+        return _path;
+    }
+}
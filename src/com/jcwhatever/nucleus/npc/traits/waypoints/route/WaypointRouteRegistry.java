@@ -0,0 +1,125 @@
+/*
+ * This file is part of NpcTraitPack for NucleusFramework, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.nucleus.npc.traits.waypoints.route;
+
+import com.jcwhatever.nucleus.npc.traits.NpcTraitPack;
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import org.bukkit.Location;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Registry of named {@link WaypointRoute}'s.
+ *
+ * <p>The paths of added routes are queued to be planned in the background
+ * (see {@link com.jcwhatever.nucleus.npc.traits.waypoints.plan.WaypointPairFactory#precompute})
+ * so routes added while the plugins are enabled are ready before players join.</p>
+ */
+public class WaypointRouteRegistry {
+
+    private final Map<String, WaypointRoute> _routes = new HashMap<>(10);
+
+    /**
+     * Create and register a new route.
+     *
+     * <p>Replaces any route with the same name. NPC's using the replaced route
+     * continue to use it until their route is set again.</p>
+     *
+     * @param name       The name of the route.
+     * @param waypoints  The route waypoints. Must contain at least 2 waypoints in the same world.
+     * @param isLoop     True if the route loops back to the first waypoint.
+     *
+     * @return  The new route.
+     */
+    public WaypointRoute add(String name, Collection<Location> waypoints, boolean isLoop) {
+        PreCon.notNullOrEmpty(name);
+        PreCon.notNull(waypoints);
+
+        WaypointRoute route = new WaypointRoute(name, waypoints, isLoop);
+        _routes.put(name, route);
+
+        List<Location> routeWaypoints = route.getWaypoints(new ArrayList<Location>(route.size() + 1));
+        if (isLoop)
+            routeWaypoints.add(routeWaypoints.get(0));
+
+        NpcTraitPack.getWaypointPairFactory().precompute(route.getWorld(), routeWaypoints);
+
+        return route;
+    }
+
+    /**
+     * Get a route by name.
+     *
+     * @param name  The name of the route.
+     *
+     * @return  The route or null if not found.
+     */
+    @Nullable
+    public WaypointRoute get(String name) {
+        PreCon.notNull(name);
+
+        return _routes.get(name);
+    }
+
+    /**
+     * Determine if a route is registered.
+     *
+     * @param name  The name of the route.
+     */
+    public boolean contains(String name) {
+        PreCon.notNull(name);
+
+        return _routes.containsKey(name);
+    }
+
+    /**
+     * Remove a route.
+     *
+     * <p>NPC's using the route continue to use it until their route is set again.</p>
+     *
+     * @param name  The name of the route.
+     *
+     * @return  The removed route or null if not found.
+     */
+    @Nullable
+    public WaypointRoute remove(String name) {
+        PreCon.notNull(name);
+
+        return _routes.remove(name);
+    }
+
+    /**
+     * Get all registered routes.
+     */
+    public List<WaypointRoute> getAll() {
+        return new ArrayList<>(_routes.values());
+    }
+}